@@ -0,0 +1,137 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import org.kohsuke.stapler.DataBoundConstructor;
+import hudson.Extension;
+import hudson.model.Describable;
+import hudson.model.Descriptor;
+import hudson.model.Hudson;
+
+/**
+ * Settings of the CLIF report analysis resources.
+ *
+ * @author Bruno Dillenseger
+ */
+public class ClifAnalysisConfig
+		implements Serializable, Describable<ClifAnalysisConfig> {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String DEFAULT_PERCENTILES = "90 95 99 99.9";
+
+	protected int parallelism;
+
+	protected boolean sketchMode;
+
+	// percentiles computed for each action, separated by spaces or commas
+	protected String percentiles;
+
+	public ClifAnalysisConfig() {
+		this.parallelism = 1;
+		this.percentiles = DEFAULT_PERCENTILES;
+	}
+
+	@DataBoundConstructor
+	public ClifAnalysisConfig(int parallelism, boolean sketchMode, String percentiles) {
+		this.parallelism = parallelism;
+		this.sketchMode = sketchMode;
+		this.percentiles = percentiles;
+	}
+
+	public Descriptor<ClifAnalysisConfig> getDescriptor() {
+		return Hudson.get().getDescriptorByType(AnalysisConfigDescriptor.class);
+	}
+
+	@Extension
+	public static final class AnalysisConfigDescriptor
+			extends Descriptor<ClifAnalysisConfig> {
+
+		@Override
+		public String getDisplayName() {
+			return "";
+		}
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public boolean isSketchMode() {
+		return sketchMode;
+	}
+
+	public void setSketchMode(boolean sketchMode) {
+		this.sketchMode = sketchMode;
+	}
+
+	public String getPercentiles() {
+		// configurations saved before this setting was added hold null
+		return percentiles != null ? percentiles : DEFAULT_PERCENTILES;
+	}
+
+	public void setPercentiles(String percentiles) {
+		this.percentiles = percentiles;
+	}
+
+	/**
+	 * @return the percentiles computed for each action, invalid values being ignored
+	 */
+	public double[] getPercentileRanks() {
+		List<Double> ranks = new ArrayList<Double>();
+		for (String value : splitPercentiles(getPercentiles())) {
+			if (isPercentile(value)) {
+				ranks.add(Double.valueOf(value));
+			}
+		}
+		double[] res = new double[ranks.size()];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = ranks.get(i);
+		}
+		return res;
+	}
+
+	static String[] splitPercentiles(String percentiles) {
+		String trimmed = percentiles.trim();
+		return trimmed.length() == 0 ? new String[0] : trimmed.split("[\\s,;]+");
+	}
+
+	/**
+	 * @return true if the value is a number in ]0, 100[
+	 */
+	static boolean isPercentile(String value) {
+		try {
+			double p = Double.parseDouble(value);
+			return p > 0 && p < 100;
+		}
+		catch (NumberFormatException e) {
+			return false;
+		}
+	}
+}
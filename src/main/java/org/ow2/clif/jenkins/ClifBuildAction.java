@@ -20,32 +20,120 @@
  */
 package org.ow2.clif.jenkins;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 import org.ow2.clif.jenkins.chart.*;
 import org.ow2.clif.jenkins.model.ClifReport;
+import org.ow2.clif.jenkins.model.LatencyHistogram;
+import org.ow2.clif.jenkins.model.TestPlan;
+import com.thoughtworks.xstream.XStream;
 import hudson.model.AbstractBuild;
+import hudson.util.XStream2;
 
 /**
  * Action used for Clif report on build level.
+ * <p>The report is stored in a compressed XML file of the build directory rather than in the
+ * build.xml file, so that loading the build does not load the report. It is read from this
+ * file when needed, and kept as long as memory allows. The report of a build recorded
+ * before the report file is moved to this file the first time it is read.</p>
+ * <p>The response time histograms of the aggregated measures are stored apart from the report,
+ * so that they can be read without the report, to compare builds or compute percentiles.</p>
  *
  * @author Julien Coste
+ * @author Bruno Dillenseger
  */
 public class ClifBuildAction
 		extends AbstractClifAction {
+
+	private static final Logger LOG = Logger.getLogger(ClifBuildAction.class.getName());
+
+	public static final String REPORT_FILE = "clif-report.xml.gz";
+
+	public static final String HISTOGRAM_FILE = "clif-histograms.xml.gz";
+
+	// percentiles given by the histogram API
+	private static final double[] HISTOGRAM_PERCENTILES = {50, 90, 95, 99, 99.9};
+
+	private static final XStream XSTREAM = new XStream2();
+
+	// writes the report without its histograms, when they are stored in the histogram file
+	private static final XStream REPORT_XSTREAM = new XStream2();
+
+	static {
+		REPORT_XSTREAM.omitField(TestPlan.class, "aggregatedHistograms");
+	}
+
 	private final AbstractBuild<?, ?> build;
 
-	private final ClifReport report;
+	// report held by build.xml: set for builds recorded before the report file,
+	// or when the report file could not be written
+	private ClifReport report;
+
+	private transient SoftReference<ClifReport> reportReference;
+
+	private transient boolean reportMoveFailed;
+
+	// histograms by test plan and measure name
+	private transient SoftReference<Map<String, Map<String, LatencyHistogram>>> histogramsReference;
 
 	public ClifBuildAction(final AbstractBuild<?, ?> build, final ClifReport report, final ClifPublisher publisher,
 	                       final PrintStream logger) {
 		this.build = build;
 		this.report = report;
+		this.reportReference = new SoftReference<ClifReport>(report);
 		logger.println("Created Clif results");
 	}
 
+	/**
+	 * Moves the report to the report file of the build directory,
+	 * the report being kept in the build record if the file can't be written.
+	 *
+	 * @param logger logger of the build
+	 */
+	public synchronized void storeReport(final PrintStream logger) {
+		if (report == null || build == null) {
+			return;
+		}
+		boolean histogramsStored;
+		try {
+			writeHistograms(build.getRootDir(), report);
+			histogramsStored = true;
+		}
+		catch (IOException e) {
+			logger.println("Can't write Clif histogram file, keeping the histograms in the report: " + e);
+			histogramsStored = false;
+		}
+		try {
+			writeReport(build.getRootDir(), report, !histogramsStored);
+			report = null;
+		}
+		catch (IOException e) {
+			logger.println("Can't write Clif report file, keeping the report in the build record: " + e);
+		}
+	}
+
 	public void doCallChart(final StaplerRequest request, final StaplerResponse response)
 			throws IOException {
 
@@ -105,8 +193,205 @@ public class ClifBuildAction
 		return build;
 	}
 
-	public ClifReport getReport() {
-		return report;
+	/**
+	 * @return the report of the build, read from the report file if needed,
+	 * or null if it can't be read
+	 */
+	public synchronized ClifReport getReport() {
+		if (report != null) {
+			ClifReport res = report;
+			if (build != null && !reportMoveFailed) {
+				moveReport();
+			}
+			return res;
+		}
+		ClifReport res = reportReference == null ? null : reportReference.get();
+		if (res == null && build != null) {
+			try {
+				res = readReport(build.getRootDir());
+				reportReference = new SoftReference<ClifReport>(res);
+			}
+			catch (IOException e) {
+				LOG.log(Level.WARNING, "Can't read Clif report of " + build, e);
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * @param testPlan test plan name
+	 * @param action   aggregated measure name
+	 * @return the histogram of the response times of an aggregated measure,
+	 * null if not available (builds recorded before histograms were kept)
+	 */
+	public synchronized LatencyHistogram getHistogram(String testPlan, String action) {
+		Map<String, Map<String, LatencyHistogram>> histograms =
+				histogramsReference == null ? null : histogramsReference.get();
+		if (histograms == null && build != null && new File(build.getRootDir(), HISTOGRAM_FILE).isFile()) {
+			try {
+				histograms = readHistograms(build.getRootDir());
+				histogramsReference = new SoftReference<Map<String, Map<String, LatencyHistogram>>>(histograms);
+			}
+			catch (IOException e) {
+				LOG.log(Level.WARNING, "Can't read Clif histograms of " + build, e);
+			}
+		}
+		if (histograms != null) {
+			Map<String, LatencyHistogram> testPlanHistograms = histograms.get(testPlan);
+			return testPlanHistograms == null ? null : testPlanHistograms.get(action);
+		}
+		// histograms kept in the report
+		ClifReport clifReport = getReport();
+		TestPlan tp = clifReport == null ? null : clifReport.getTestplan(testPlan);
+		return tp == null ? null : tp.getAggregatedHistogram(action);
+	}
+
+	/**
+	 * Writes the report held by the build record, for builds recorded before the report file,
+	 * to the report file. The report is removed from build.xml the next time the build is saved.
+	 */
+	private void moveReport() {
+		try {
+			if (!new File(build.getRootDir(), REPORT_FILE).isFile()) {
+				writeReport(build.getRootDir(), report, true);
+			}
+			reportReference = new SoftReference<ClifReport>(report);
+			report = null;
+		}
+		catch (IOException e) {
+			reportMoveFailed = true;
+			LOG.log(Level.WARNING, "Can't move Clif report of " + build + " to its report file", e);
+		}
+	}
+
+	/**
+	 * Sends the histogram of an aggregated measure as JSON: the exact count, mean,
+	 * standard deviation, min and max, some estimated percentiles, and the value
+	 * and count of the non-empty buckets.
+	 */
+	public void doHistogram(final StaplerRequest request, final StaplerResponse response)
+			throws IOException {
+
+		final ClifGraphParam params = new ClifGraphParam();
+		request.bindParameters(params);
+
+		LatencyHistogram histogram = getHistogram(params.getTestPlan(), params.getLabel());
+		if (histogram == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+		JSONObject json = new JSONObject();
+		json.put("n", histogram.getN());
+		if (histogram.getN() > 0) {
+			json.put("mean", histogram.getMean());
+			json.put("standardDeviation", histogram.getStandardDeviation());
+			json.put("min", histogram.getMin());
+			json.put("max", histogram.getMax());
+			JSONObject percentiles = new JSONObject();
+			for (double p : HISTOGRAM_PERCENTILES) {
+				percentiles.put(String.valueOf(p), histogram.getPercentile(p));
+			}
+			json.put("percentiles", percentiles);
+		}
+		JSONArray buckets = new JSONArray();
+		for (int i = 0; i < histogram.getBucketNumber(); i++) {
+			if (histogram.getBucketCount(i) > 0) {
+				JSONArray bucket = new JSONArray();
+				bucket.add(histogram.getBucketValue(i));
+				bucket.add(histogram.getBucketCount(i));
+				buckets.add(bucket);
+			}
+		}
+		json.put("buckets", buckets);
+		response.setContentType("application/json;charset=UTF-8");
+		response.getWriter().print(json.toString());
+	}
+
+	/**
+	 * @param withHistograms true to keep the histograms in the report file,
+	 *                       false when they are written by {@link #writeHistograms(File, ClifReport)}
+	 */
+	static void writeReport(File buildDir, ClifReport report, boolean withHistograms)
+			throws IOException {
+		writeXml(withHistograms ? XSTREAM : REPORT_XSTREAM, new File(buildDir, REPORT_FILE), report);
+	}
+
+	static ClifReport readReport(File buildDir)
+			throws IOException {
+		return (ClifReport) readXml(XSTREAM, new File(buildDir, REPORT_FILE));
+	}
+
+	/**
+	 * Writes the histograms of the test plans of a report to the histogram file of a build directory.
+	 */
+	static void writeHistograms(File buildDir, ClifReport report)
+			throws IOException {
+		HashMap<String, Map<String, LatencyHistogram>> histograms = new HashMap<String, Map<String, LatencyHistogram>>();
+		for (TestPlan tp : report.getTestplans()) {
+			if (tp.getAggregatedHistograms() != null) {
+				histograms.put(tp.getName(), tp.getAggregatedHistograms());
+			}
+		}
+		if (histograms.isEmpty()) {
+			return;
+		}
+		writeXml(XSTREAM, new File(buildDir, HISTOGRAM_FILE), histograms);
+	}
+
+	@SuppressWarnings("unchecked")
+	static Map<String, Map<String, LatencyHistogram>> readHistograms(File buildDir)
+			throws IOException {
+		return (Map<String, Map<String, LatencyHistogram>>) readXml(XSTREAM, new File(buildDir, HISTOGRAM_FILE));
+	}
+
+	/**
+	 * Writes an object as compressed XML to a file, through a temporary file
+	 * so that the file is never left incomplete.
+	 */
+	static void writeXml(XStream xstream, File file, Object object)
+			throws IOException {
+		File tempFile = new File(file.getPath() + ".tmp");
+		Writer out = new OutputStreamWriter(
+				new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile))), StandardCharsets.UTF_8);
+		try {
+			xstream.toXML(object, out);
+		}
+		catch (RuntimeException e) {
+			throw new IOException("Can't write " + file, e);
+		}
+		finally {
+			out.close();
+		}
+		rename(tempFile, file);
+	}
+
+	/**
+	 * Reads an object written by {@link #writeXml(XStream, File, Object)},
+	 * the classes being checked by the class filter of the given XStream.
+	 */
+	static Object readXml(XStream xstream, File file)
+			throws IOException {
+		Reader in = new InputStreamReader(
+				new GZIPInputStream(new BufferedInputStream(new FileInputStream(file))), StandardCharsets.UTF_8);
+		try {
+			return xstream.fromXML(in);
+		}
+		catch (RuntimeException e) {
+			throw new IOException("Can't read " + file, e);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private static void rename(File tempFile, File file)
+			throws IOException {
+		if (!tempFile.renameTo(file)) {
+			file.delete();
+			if (!tempFile.renameTo(file)) {
+				throw new IOException("Can't rename " + tempFile + " to " + file);
+			}
+		}
 	}
 
 	@Override
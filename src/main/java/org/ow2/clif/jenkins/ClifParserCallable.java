@@ -0,0 +1,230 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.commons.collections.CollectionUtils;
+import org.ow2.clif.jenkins.chart.ChartConfiguration;
+import org.ow2.clif.jenkins.model.ClifReport;
+import org.ow2.clif.jenkins.parser.clif.ClifParser;
+import org.ow2.clif.jenkins.parser.clif.ClifParserException;
+import hudson.PluginWrapper;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import jenkins.MasterToSlaveFileCallable;
+import jenkins.model.Jenkins;
+
+/**
+ * Parses a CLIF report directory on the node owning the build workspace.
+ * <p>Raw measurement files are read locally by the node, charts are generated
+ * in a directory of this node, and only the resulting {@link ClifReport} is
+ * sent back to the controller. The report is null if the parsing failed.</p>
+ * <p>The report and charts are cached in a directory of the node, outside of the report
+ * directory, and reused as long as the report directory and the parsing configuration
+ * don't change.</p>
+ *
+ * @author Bruno Dillenseger
+ */
+public class ClifParserCallable
+		extends MasterToSlaveFileCallable<ClifReport> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String chartDirectory;
+
+	private final String cacheDirectory;
+
+	private final ChartConfiguration chartConfiguration;
+
+	private final boolean dateFiltering;
+
+	private final long minTimestamp;
+
+	private final long maxTimestamp;
+
+	private final ClifDataCleanup dataCleanupConfig;
+
+	private final List<ClifResultConfig> successPatterns;
+
+	private final List<ClifAlias> alias;
+
+	private final int parallelism;
+
+	private final boolean sketchMode;
+
+	private final double[] percentiles;
+
+	private final TaskListener listener;
+
+	private final String pluginVersion;
+
+	/**
+	 * @param publisher      publisher holding the parsing configuration
+	 * @param chartDirectory directory of the node where charts are generated
+	 * @param cacheDirectory directory of the node where the analysis is cached
+	 * @param listener       build listener used to log the parsing progress
+	 */
+	public ClifParserCallable(ClifPublisher publisher, String chartDirectory, String cacheDirectory,
+	                          TaskListener listener) {
+		this.chartDirectory = chartDirectory;
+		this.cacheDirectory = cacheDirectory;
+		this.chartConfiguration =
+				new ChartConfiguration(publisher.getChartHeight(), publisher.getChartWidth(),
+				                       publisher.getDistributionSliceNumber(), publisher.getDistributionSliceSize(),
+				                       publisher.getStatisticalPeriod());
+		this.chartConfiguration.setMovingPercentiles(publisher.isMovingPercentiles());
+		this.chartConfiguration.setMovingPercentileRanks(publisher.getAnalysisConfig().getPercentileRanks());
+		this.chartConfiguration.setRenderingParallelism(publisher.getChartParallelism());
+		this.chartConfiguration.setLazyRendering(publisher.isLazyCharts());
+		this.chartConfiguration.setScatterDensityThreshold(publisher.getScatterDensityThreshold());
+		this.dateFiltering = publisher.isDateFiltering();
+		this.minTimestamp = ClifPublisher.getLong(publisher.getMinTimestamp());
+		this.maxTimestamp = ClifPublisher.getLong(publisher.getMaxTimestamp());
+		this.dataCleanupConfig = publisher.getDataCleanupConfig();
+		this.successPatterns = copy(publisher.getSuccessPatterns());
+		this.alias = copy(publisher.getAlias());
+		this.parallelism = publisher.getAnalysisConfig().getParallelism();
+		this.sketchMode = publisher.getAnalysisConfig().isSketchMode();
+		this.percentiles = publisher.getAnalysisConfig().getPercentileRanks();
+		this.listener = listener;
+		this.pluginVersion = getPluginVersion();
+	}
+
+	public ClifReport invoke(File reportDir, VirtualChannel channel)
+			throws IOException, InterruptedException {
+		ClifReportCache cache =
+				new ClifReportCache(new File(this.cacheDirectory), reportDir, this.pluginVersion, getSettings());
+		ClifReport report = cache.load(new File(this.chartDirectory));
+		if (report != null) {
+			this.listener.getLogger().println("Using the cached analysis of the CLIF report directory");
+			return report;
+		}
+
+		report = parse(reportDir);
+		if (report != null) {
+			try {
+				cache.store(report, new File(this.chartDirectory));
+			}
+			catch (IOException e) {
+				this.listener.getLogger().println("Can't cache the analysis of the CLIF report directory: " + e);
+			}
+		}
+		return report;
+	}
+
+	private ClifReport parse(File reportDir) {
+		// Create clif parser
+		ClifParser parser = new ClifParser(reportDir.getAbsolutePath(), new File(this.chartDirectory));
+		parser.setChartConfiguration(this.chartConfiguration);
+		if (this.parallelism > 1) {
+			parser.setParallelism(this.parallelism);
+		}
+		if (this.sketchMode) {
+			parser.enableSketchMode();
+		}
+		parser.setPercentiles(this.percentiles);
+
+		if (this.dateFiltering) {
+			parser.addDateFilter(this.minTimestamp, this.maxTimestamp);
+		}
+
+		if (this.dataCleanupConfig.isEnabled()) {
+			parser.enableDataCleanup(this.dataCleanupConfig.getKeepFactor(),
+			                         this.dataCleanupConfig.getKeepPercentage());
+		}
+
+		if (CollectionUtils.isNotEmpty(this.successPatterns)) {
+			for (ClifResultConfig resultConfig : this.successPatterns) {
+				parser.addSuccessfulResultPattern(resultConfig.getActionType(),
+				                                  resultConfig.getPatternSuccessfulResult());
+			}
+		}
+
+		if (CollectionUtils.isNotEmpty(this.alias)) {
+			for (ClifAlias anAlias : this.alias) {
+				parser.addActionAliasPattern(anAlias.getValue(), anAlias.getPattern());
+			}
+		}
+
+		// Parse Clif report directory
+		try {
+			return parser.parse(this.listener.getLogger());
+		}
+		catch (ClifParserException cpe) {
+			this.listener.getLogger().println(cpe.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * @return the version of this plugin, as known by the controller, null if unknown
+	 */
+	private static String getPluginVersion() {
+		Jenkins jenkins = Jenkins.getInstanceOrNull();
+		PluginWrapper plugin = jenkins == null ? null : jenkins.getPluginManager().whichPlugin(ClifParserCallable.class);
+		return plugin == null ? ClifParserCallable.class.getPackage().getImplementationVersion() : plugin.getVersion();
+	}
+
+	/**
+	 * @return the settings changing the result of the parsing, as a string
+	 */
+	String getSettings() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("charts=").append(chartConfiguration.getChartHeight())
+		  .append(',').append(chartConfiguration.getChartWidth())
+		  .append(',').append(chartConfiguration.getDistributionSliceNumber())
+		  .append(',').append(chartConfiguration.getDistributionSliceSize())
+		  .append(',').append(chartConfiguration.getStatisticalPeriod())
+		  .append(',').append(chartConfiguration.isMovingPercentiles())
+		  .append(',').append(chartConfiguration.isLazyRendering())
+		  .append(',').append(chartConfiguration.getScatterDensityThreshold()).append('\n');
+		if (dateFiltering) {
+			sb.append("dates=").append(minTimestamp).append(',').append(maxTimestamp).append('\n');
+		}
+		if (dataCleanupConfig.isEnabled()) {
+			sb.append("cleanup=").append(dataCleanupConfig.getKeepFactor())
+			  .append(',').append(dataCleanupConfig.getKeepPercentage()).append('\n');
+		}
+		if (successPatterns != null) {
+			for (ClifResultConfig resultConfig : successPatterns) {
+				sb.append("success=").append(resultConfig.getActionType())
+				  .append(',').append(resultConfig.getPatternSuccessfulResult()).append('\n');
+			}
+		}
+		if (alias != null) {
+			for (ClifAlias anAlias : alias) {
+				sb.append("alias=").append(anAlias.getValue()).append(',').append(anAlias.getPattern()).append('\n');
+			}
+		}
+		sb.append("sketch=").append(sketchMode).append('\n');
+		sb.append("percentiles=").append(Arrays.toString(percentiles));
+		return sb.toString();
+	}
+
+	private static <T> List<T> copy(List<T> list) {
+		return list == null ? null : new ArrayList<T>(list);
+	}
+}
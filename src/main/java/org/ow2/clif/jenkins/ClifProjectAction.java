@@ -22,14 +22,16 @@
 package org.ow2.clif.jenkins;
 
 import java.awt.Color;
+import java.awt.HeadlessException;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.io.OutputStream;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.HashSet;
+import javax.servlet.http.HttpServletResponse;
+import org.jfree.chart.ChartUtilities;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.CategoryAxis;
 import org.jfree.chart.axis.CategoryLabelPositions;
@@ -43,14 +45,9 @@ import org.jfree.chart.renderer.category.StatisticalBarRenderer;
 import org.jfree.data.statistics.DefaultStatisticalCategoryDataset;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
-import org.ow2.clif.jenkins.model.ClifReport;
 import org.ow2.clif.jenkins.model.Measure;
-import org.ow2.clif.jenkins.model.TestPlan;
-import hudson.model.AbstractBuild;
 import hudson.model.Project;
 import hudson.model.Result;
-import hudson.model.Run;
-import hudson.util.ChartUtil;
 import hudson.util.ColorPalette;
 import hudson.util.DataSetBuilder;
 
@@ -63,6 +60,13 @@ import hudson.util.DataSetBuilder;
 public class ClifProjectAction
 		extends AbstractClifAction {
 
+	private static final int GRAPH_WIDTH = 400;
+
+	private static final int GRAPH_HEIGHT = 250;
+
+	// largest width or height of a graph accepted from a request
+	private static final int MAX_GRAPH_SIZE = 2000;
+
 	private final Project project;
 
 	public Map<String, Set<String>> getActionsAvailable() {
@@ -76,33 +80,25 @@ public class ClifProjectAction
 
 	private Map<String, Set<String>> computeActionsAvailable() {
 		Map<String, Set<String>> res = new HashMap<String, Set<String>>();
-		List<?> builds = getProject().getBuilds();
-		for (Object build : builds) {
-			AbstractBuild<?, ?> currentBuild = (AbstractBuild<?, ?>) build;
-			ClifBuildAction clifBuildAction = currentBuild.getAction(ClifBuildAction.class);
-			if (clifBuildAction == null) {
-				continue;
-			}
-			ClifReport clifReport = clifBuildAction.getReport();
-			if (clifReport == null) {
-				continue;
-			}
-			for (TestPlan tp : clifReport.getTestplans()) {
-				Set<String> actions = res.get(tp.getName());
-				if (actions == null) {
-					actions = new HashSet<String>();
-					res.put(tp.getName(), actions);
-				}
-				if (tp.getAggregatedMeasures() != null) {
-					for (Measure m : tp.getAggregatedMeasures()) {
-						actions.add(m.getName());
-					}
-				}
+		for (ClifTrendIndex.Entry entry : getTrendIndex().getEntries()) {
+			Set<String> actions = res.get(entry.getTestPlan());
+			if (actions == null) {
+				actions = new HashSet<String>();
+				res.put(entry.getTestPlan(), actions);
 			}
+			actions.add(entry.getMeasure().getName());
 		}
 		return res;
 	}
 
+	/**
+	 * @return the index of the measures of the builds, rather than the builds themselves
+	 * which would have to be loaded
+	 */
+	private ClifTrendIndex getTrendIndex() {
+		return ClifTrendIndex.getIndex(project);
+	}
+
 	public Project getProject() {
 		return project;
 	}
@@ -121,10 +117,7 @@ public class ClifProjectAction
 
 		ClifGraphParam params = new ClifGraphParam();
 		request.bindParameters(params);
-
-		if (shouldReloadGraph(request, response)) {
-			ChartUtil.generateGraph(request, response, createActionGraph(params), 400, 250);
-		}
+		sendGraph(request, response, params, GraphType.TIMES);
 	}
 
 	public void doActionErrorGraph(StaplerRequest request, StaplerResponse response)
@@ -132,45 +125,100 @@ public class ClifProjectAction
 
 		ClifGraphParam params = new ClifGraphParam();
 		request.bindParameters(params);
+		sendGraph(request, response, params, GraphType.ERRORS);
+	}
+
+	public void doActionPercentileGraph(StaplerRequest request, StaplerResponse response)
+			throws IOException {
+
+		ClifGraphParam params = new ClifGraphParam();
+		request.bindParameters(params);
+		sendGraph(request, response, params, GraphType.PERCENTILES);
+	}
 
-		if (shouldReloadGraph(request, response)) {
-			ChartUtil.generateGraph(request, response, createActionErrorGraph(params), 400, 250);
+	/**
+	 * Sends the PNG image of a trend graph. Graphs are rendered from the trend index and
+	 * cached with its revision, in a cache bounded by the total size of the images. The browser is asked to check
+	 * whether its copy of the graph is still valid, against the revision of the index.
+	 */
+	private void sendGraph(StaplerRequest request, StaplerResponse response, ClifGraphParam params, GraphType type)
+			throws IOException {
+		ClifTrendIndex index = getTrendIndex();
+		String etag = "\"" + index.getRevision() + "\"";
+		response.setHeader("ETag", etag);
+		response.setHeader("Cache-Control", "private, no-cache");
+		String ifNoneMatch = request.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			if (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*")) {
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+		}
+		else if (request.checkIfModified(index.getLastModified(), response)) {
+			return;
 		}
+
+		int width = getGraphSize(request, "width", GRAPH_WIDTH);
+		int height = getGraphSize(request, "height", GRAPH_HEIGHT);
+		String key = params.getTestPlan() + '\n' + params.getLabel() + '\n' + type
+		             + '\n' + width + 'x' + height + '\n' + index.getLastBuildNumber();
+		byte[] image = index.getGraph(key);
+		if (image == null) {
+			try {
+				JFreeChart chart;
+				switch (type) {
+					case ERRORS:
+						chart = createActionErrorGraph(index, params);
+						break;
+					case PERCENTILES:
+						chart = createActionPercentileGraph(index, params);
+						break;
+					default:
+						chart = createActionGraph(index, params);
+				}
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				ChartUtilities.writeChartAsPNG(out, chart, width, height);
+				image = out.toByteArray();
+			}
+			catch (HeadlessException e) {
+				response.sendRedirect2(request.getContextPath() + "/images/headless.png");
+				return;
+			}
+			index.putGraph(key, image);
+		}
+		response.setContentType("image/png");
+		response.setContentLength(image.length);
+		OutputStream os = response.getOutputStream();
+		os.write(image);
+		os.close();
+	}
+
+	private static int getGraphSize(StaplerRequest request, String name, int defaultSize) {
+		String value = request.getParameter(name);
+		if (value != null) {
+			try {
+				return Math.max(1, Math.min(MAX_GRAPH_SIZE, Integer.parseInt(value)));
+			}
+			catch (NumberFormatException e) {
+				// default size
+			}
+		}
+		return defaultSize;
 	}
 
-	private JFreeChart createActionGraph(ClifGraphParam params) {
+	private JFreeChart createActionGraph(ClifTrendIndex index, ClifGraphParam params) {
 		DefaultStatisticalCategoryDataset timeDS = new DefaultStatisticalCategoryDataset();
-		DataSetBuilder<String, ChartUtil.NumberOnlyBuildLabel> minmaxDS =
-			new DataSetBuilder<String, ChartUtil.NumberOnlyBuildLabel>();
+		DataSetBuilder<String, BuildLabel> minmaxDS = new DataSetBuilder<String, BuildLabel>();
 
-		List<AbstractBuild> builds = new ArrayList<AbstractBuild>(getProject().getBuilds());
-		Collections.sort(builds);
-		for (Run<?,?> currentBuild : builds) {
-			Result buildResult = currentBuild.getResult();
+		for (ClifTrendIndex.Entry entry : index.getEntries(params.getTestPlan(), params.getLabel())) {
+			Result buildResult = entry.getResult();
 			if (buildResult != null	&& buildResult.isBetterOrEqualTo(Result.SUCCESS))
 			{
-				ChartUtil.NumberOnlyBuildLabel label = new ChartUtil.NumberOnlyBuildLabel(currentBuild);
-				ClifBuildAction clifBuildAction = currentBuild.getAction(ClifBuildAction.class);
-				if (clifBuildAction == null) {
-					continue;
-				}
-				ClifReport clifReport = clifBuildAction.getReport();
-				if (clifReport == null) {
-					continue;
-				}
-				TestPlan tp = clifReport.getTestplan(params.getTestPlan());
-				if (tp == null) {
-					continue;
-				}
-				if (tp.getAggregatedMeasures() != null) {
-					Measure m = tp.getAggregatedMeasure(params.getLabel());
-					if (m == null) {
-						continue;
-					}
-					timeDS.add(m.getAverage(), m.getStdDev(), Messages.ProjectAction_Mean(), label);
-					minmaxDS.add(m.getMax(), Messages.ProjectAction_Max(), label);
-					minmaxDS.add(m.getMin(), Messages.ProjectAction_Min(), label);
-				}
+				BuildLabel label = new BuildLabel(entry);
+				Measure m = entry.getMeasure();
+				timeDS.add(m.getAverage(), m.getStdDev(), Messages.ProjectAction_Mean(), label);
+				minmaxDS.add(m.getMax(), Messages.ProjectAction_Max(), label);
+				minmaxDS.add(m.getMin(), Messages.ProjectAction_Min(), label);
 			}
 		}
 
@@ -208,37 +256,16 @@ public class ClifProjectAction
 		return chart;
 	}
 
-	private JFreeChart createActionErrorGraph(ClifGraphParam params) {
-		DataSetBuilder<String, ChartUtil.NumberOnlyBuildLabel> errorsDS =
-			new DataSetBuilder<String, ChartUtil.NumberOnlyBuildLabel>();
+	private JFreeChart createActionErrorGraph(ClifTrendIndex index, ClifGraphParam params) {
+		DataSetBuilder<String, BuildLabel> errorsDS = new DataSetBuilder<String, BuildLabel>();
 
-		List<AbstractBuild> builds = new ArrayList<AbstractBuild>(getProject().getBuilds());
-		Collections.sort(builds);
-		for (Run<?,?> currentBuild : builds)
+		for (ClifTrendIndex.Entry entry : index.getEntries(params.getTestPlan(), params.getLabel()))
 		{
-			Result buildResult = currentBuild.getResult();
+			Result buildResult = entry.getResult();
 			if (buildResult != null	&& buildResult.isBetterOrEqualTo(Result.SUCCESS))
 			{
-				ChartUtil.NumberOnlyBuildLabel label = new ChartUtil.NumberOnlyBuildLabel(currentBuild);
-				ClifBuildAction clifBuildAction = currentBuild.getAction(ClifBuildAction.class);
-				if (clifBuildAction == null) {
-					continue;
-				}
-				ClifReport clifReport = clifBuildAction.getReport();
-				if (clifReport == null) {
-					continue;
-				}
-				TestPlan tp = clifReport.getTestplan(params.getTestPlan());
-				if (tp == null) {
-					continue;
-				}
-				if (tp.getAggregatedMeasures() != null) {
-					Measure m = tp.getAggregatedMeasure(params.getLabel());
-					if (m == null) {
-						continue;
-					}
-					errorsDS.add(m.errorPercent() * 100, Messages.ProjectAction_Errors(), label);
-				}
+				BuildLabel label = new BuildLabel(entry);
+				errorsDS.add(entry.getMeasure().errorPercent() * 100, Messages.ProjectAction_Errors(), label);
 			}
 		}
 
@@ -268,8 +295,86 @@ public class ClifProjectAction
 		return chart;
 	}
 
-	private boolean shouldReloadGraph(StaplerRequest request, StaplerResponse response) {
-		return true; // shouldReloadGraph(request, response,
-		// project.getLastSuccessfulBuild());
+	private JFreeChart createActionPercentileGraph(ClifTrendIndex index, ClifGraphParam params) {
+		DataSetBuilder<String, BuildLabel> percentilesDS = new DataSetBuilder<String, BuildLabel>();
+
+		for (ClifTrendIndex.Entry entry : index.getEntries(params.getTestPlan(), params.getLabel()))
+		{
+			Result buildResult = entry.getResult();
+			if (buildResult != null	&& buildResult.isBetterOrEqualTo(Result.SUCCESS))
+			{
+				BuildLabel label = new BuildLabel(entry);
+				Measure m = entry.getMeasure();
+				percentilesDS.add(m.getMedian(), Messages.ProjectAction_Median(), label);
+				String[] percentiles = m.getPercentileLabels();
+				long[] values = m.getPercentileValues();
+				for (int i = 0; i < percentiles.length; i++) {
+					percentilesDS.add(values[i], Messages.ProjectAction_Percentile(percentiles[i]), label);
+				}
+			}
+		}
+
+		final CategoryAxis xAxis = new CategoryAxis(Messages.ProjectAction_BuildAxis());
+		xAxis.setLowerMargin(0.01);
+		xAxis.setUpperMargin(0.01);
+		xAxis.setCategoryLabelPositions(CategoryLabelPositions.UP_90);
+		xAxis.setMaximumCategoryLabelLines(3);
+
+		final ValueAxis timeAxis = new NumberAxis(Messages.ProjectAction_TimeAxis());
+		timeAxis.setUpperMargin(0.1);
+
+		final LineAndShapeRenderer percentileRenderer = new LineAndShapeRenderer();
+		percentileRenderer.setItemMargin(0.0);
+
+		final CategoryPlot plot = new CategoryPlot(percentilesDS.build(), xAxis, timeAxis, percentileRenderer);
+		plot.setBackgroundPaint(Color.WHITE);
+		plot.setOutlinePaint(null);
+		plot.setForegroundAlpha(0.8f);
+		plot.setRangeGridlinesVisible(true);
+		plot.setRangeGridlinePaint(Color.black);
+
+		JFreeChart chart = new JFreeChart(Messages.ProjectAction_Percentiles(params.getLabel()), plot);
+		chart.setBackgroundPaint(Color.WHITE);
+
+		return chart;
+	}
+
+	private enum GraphType {
+		TIMES, ERRORS, PERCENTILES
+	}
+
+	/**
+	 * Label of a build in trend graphs, as ChartUtil.NumberOnlyBuildLabel which requires the build itself
+	 */
+	private static final class BuildLabel
+			implements Comparable<BuildLabel> {
+
+		private final int number;
+
+		private final String name;
+
+		BuildLabel(ClifTrendIndex.Entry entry) {
+			this.number = entry.getBuildNumber();
+			this.name = entry.getBuildName();
+		}
+
+		public int compareTo(BuildLabel that) {
+			return this.number < that.number ? -1 : (this.number == that.number ? 0 : 1);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof BuildLabel && ((BuildLabel) o).number == number;
+		}
+
+		@Override
+		public int hashCode() {
+			return number;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
 	}
 }
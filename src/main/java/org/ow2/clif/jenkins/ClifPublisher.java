@@ -21,23 +21,24 @@
  */
 package org.ow2.clif.jenkins;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.List;
 import java.util.regex.Pattern;
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
-import org.ow2.clif.jenkins.chart.ChartConfiguration;
+import org.ow2.clif.jenkins.chart.AbstractChart;
 import org.ow2.clif.jenkins.model.ClifReport;
-import org.ow2.clif.jenkins.parser.clif.ClifParser;
-import org.ow2.clif.jenkins.parser.clif.ClifParserException;
 import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
+import hudson.Util;
 import hudson.model.*;
+import hudson.slaves.WorkspaceList;
 import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Publisher;
@@ -74,6 +75,8 @@ public class ClifPublisher
 
 	private ClifDataCleanup dataCleanupConfig;
 
+	private ClifAnalysisConfig analysisConfig;
+
 	private final int chartWidth;
 
 	private final int chartHeight;
@@ -84,11 +87,22 @@ public class ClifPublisher
 
 	private final int statisticalPeriod;
 
+	// optional settings, set after construction
+
+	private boolean movingPercentiles = false;
+
+	private int chartParallelism = 1;
+
+	private boolean lazyCharts = true;
+
+	private int scatterDensityThreshold = 100000;
+
 	public ClifPublisher(String clifReportDirectory) {
 		// duplication of default values of
 		// src/main/resources/org/ow2/clif/jenkins/ClifPublisher/config.jelly
 		this(clifReportDirectory, false, "", "", 1200, 600, 50, 15, 5);
 		this.dataCleanupConfig = new ClifDataCleanup();
+		this.analysisConfig = new ClifAnalysisConfig();
 	}
 
 	@DataBoundConstructor
@@ -117,46 +131,32 @@ public class ClifPublisher
 			logger.println("Reading CLIF report directory: " + this.clifReportDirectory);
 			FilePath buildWorkspace = build.getWorkspace();
 			if (buildWorkspace != null && buildWorkspace.child(this.clifReportDirectory).exists()) {
+				// Parse Clif report directory on the node owning the workspace,
+				// charts being generated in a temporary directory of this node
+				FilePath reportDir = buildWorkspace.child(this.clifReportDirectory);
+				FilePath tempDir = WorkspaceList.tempDir(buildWorkspace);
+				tempDir.mkdirs();
+				FilePath chartDir = tempDir.createTempDir("clif", null);
+				// one analysis cache per report directory of the workspace
+				FilePath cacheDir = tempDir.child(ClifReportCache.CACHE_DIRECTORY)
+				                           .child(Util.getDigestOf(this.clifReportDirectory));
 				try {
-					// Create clif parser
-					FilePath reportDir = buildWorkspace.child(this.clifReportDirectory);
-					ClifParser parser = new ClifParser(reportDir.getRemote(), build.getRootDir());
-
-					ChartConfiguration chartConfig =
-							new ChartConfiguration(this.chartHeight, this.chartWidth, this.distributionSliceNumber,
-							                       this.distributionSliceSize, this.statisticalPeriod);
-					parser.setChartConfiguration(chartConfig);
-
-					if (this.dateFiltering) {
-						parser.addDateFilter(getLong(this.minTimestamp), getLong(this.maxTimestamp));
-					}
-
-					if (this.dataCleanupConfig.isEnabled()) {
-						parser.enableDataCleanup(this.dataCleanupConfig.getKeepFactor(),
-						                         this.dataCleanupConfig.getKeepPercentage());
-					}
-
-					if (CollectionUtils.isNotEmpty(this.successPatterns)) {
-						for (ClifResultConfig resultConfig : this.successPatterns) {
-							parser.addSuccessfulResultPattern(resultConfig.getActionType(),
-							                                  resultConfig.getPatternSuccessfulResult());
-						}
+					ClifReport report = reportDir.act(
+							new ClifParserCallable(this, chartDir.getRemote(), cacheDir.getRemote(), listener));
+					if (report != null) {
+						chartDir.child("clif").copyRecursiveTo("*.png,*" + AbstractChart.DATA_FILE_EXTENSION,
+						                                       new FilePath(new File(build.getRootDir(), "clif")));
+						ClifBuildAction buildAction = new ClifBuildAction(build, report, this, logger);
+						buildAction.storeReport(logger);
+						build.addAction(buildAction);
 					}
-
-					if (CollectionUtils.isNotEmpty(this.alias)) {
-						for (ClifAlias anAlias : this.alias) {
-							parser.addActionAliasPattern(anAlias.getValue(), anAlias.getPattern());
-						}
+					else {
+						logger.println("Clif report failed!");
+						build.setResult(Result.FAILURE);
 					}
-
-					// Parse Clif report directory
-					ClifReport report = parser.parse(listener.getLogger());
-					build.addAction(new ClifBuildAction(build, report, this, logger));
-
 				}
-				catch (ClifParserException cpe) {
-					logger.println("Clif report failed!");
-					build.setResult(Result.FAILURE);
+				finally {
+					chartDir.deleteRecursive();
 				}
 			}
 			else {
@@ -242,6 +242,12 @@ public class ClifPublisher
 				instance.alias = req.bindParametersToList(ClifAlias.class, "clif.alias.");
 				instance.successPatterns = req.bindParametersToList(ClifResultConfig.class, "clif.successPatterns.");
 				instance.dataCleanupConfig = req.bindParameters(ClifDataCleanup.class, "clif.datacleanup.");
+				instance.analysisConfig = req.bindParameters(ClifAnalysisConfig.class, "clif.analysis.");
+				// unchecked checkboxes send no parameter
+				instance.movingPercentiles = req.getParameter("clif.movingPercentiles") != null;
+				instance.lazyCharts = req.getParameter("clif.lazyCharts") != null;
+				instance.chartParallelism = (int) getLong(req.getParameter("clif.chartParallelism"));
+				instance.scatterDensityThreshold = (int) getLong(req.getParameter("clif.scatterDensityThreshold"));
 				return instance;
 			}
 			else
@@ -326,6 +332,28 @@ public class ClifPublisher
 			return res;
 		}
 
+		public FormValidation doCheckScatterDensityThreshold(@QueryParameter String value) {
+			return checkPositiveLongValue(value, Messages.Publisher_ScatterDensityThreshold_Format());
+		}
+
+		public FormValidation doCheckPercentiles(@QueryParameter String value) {
+			if (value != null) {
+				for (String percentile : ClifAnalysisConfig.splitPercentiles(value)) {
+					if (!ClifAnalysisConfig.isPercentile(percentile)) {
+						return FormValidation.error(Messages.Publisher_Percentiles_Format());
+					}
+				}
+			}
+			return FormValidation.ok();
+		}
+
+		public FormValidation doCheckParallelism(@QueryParameter String value) {
+			if (isLong(value) && getLong(value) > 0) {
+				return FormValidation.ok();
+			}
+			return FormValidation.error(Messages.Publisher_Parallelism_Format());
+		}
+
 	}
 
 	protected static boolean isLong(String value) {
@@ -424,6 +452,16 @@ public class ClifPublisher
 		return dataCleanupConfig;
 	}
 
+	public ClifAnalysisConfig getAnalysisConfig() {
+		// publishers configured before this setting existed have no analysis configuration
+		return analysisConfig != null ? analysisConfig : new ClifAnalysisConfig();
+	}
+
+	@DataBoundSetter
+	public void setAnalysisConfig(ClifAnalysisConfig analysisConfig) {
+		this.analysisConfig = analysisConfig;
+	}
+
 	public int getChartWidth() {
 		return chartWidth;
 	}
@@ -448,4 +486,42 @@ public class ClifPublisher
 		return statisticalPeriod;
 	}
 
+	public boolean isMovingPercentiles() {
+		return movingPercentiles;
+	}
+
+	@DataBoundSetter
+	public void setMovingPercentiles(boolean movingPercentiles) {
+		this.movingPercentiles = movingPercentiles;
+	}
+
+	public boolean isLazyCharts() {
+		return lazyCharts;
+	}
+
+	@DataBoundSetter
+	public void setLazyCharts(boolean lazyCharts) {
+		this.lazyCharts = lazyCharts;
+	}
+
+	public int getScatterDensityThreshold() {
+		// negative values are only reported by the form validation
+		return Math.max(0, scatterDensityThreshold);
+	}
+
+	@DataBoundSetter
+	public void setScatterDensityThreshold(int scatterDensityThreshold) {
+		this.scatterDensityThreshold = scatterDensityThreshold;
+	}
+
+	public int getChartParallelism() {
+		// configurations saved before this setting was added hold 0
+		return Math.max(1, chartParallelism);
+	}
+
+	@DataBoundSetter
+	public void setChartParallelism(int chartParallelism) {
+		this.chartParallelism = chartParallelism;
+	}
+
 }
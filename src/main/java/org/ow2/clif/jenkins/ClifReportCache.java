@@ -0,0 +1,179 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import org.apache.commons.io.FileUtils;
+import org.ow2.clif.jenkins.model.ClifReport;
+import com.thoughtworks.xstream.XStream;
+import hudson.Util;
+import hudson.util.XStream2;
+
+/**
+ * Cache of the analysis of a CLIF report directory, stored outside of this directory
+ * (in the workspace temporary directory), so that the report directory is left as is.
+ * <p>The cache holds the {@link ClifReport} and the charts resulting from the last analysis,
+ * identified by a fingerprint of the report directory files (paths, sizes and modification
+ * dates), of the plugin version and of the analysis settings. Analyzing again an unchanged
+ * report directory with the same plugin version and settings just reads back the cached
+ * report and charts. The report is stored as compressed XML, in the same format as the
+ * report file of the builds.</p>
+ *
+ * @author Bruno Dillenseger
+ */
+public class ClifReportCache {
+
+	public static final String CACHE_DIRECTORY = "clif-cache";
+
+	private static final String FINGERPRINT_FILE = "fingerprint";
+
+	private static final String REPORT_FILE = "report.xml.gz";
+
+	private static final String CHART_DIRECTORY = "clif";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final XStream XSTREAM = new XStream2();
+
+	private final File cacheDir;
+
+	private final String fingerprint;
+
+	/**
+	 * @param cacheDir      directory of the cache, outside of the report directory
+	 * @param reportDir     CLIF report directory
+	 * @param pluginVersion version of the plugin performing the analysis,
+	 *                      null if unknown, in which case the cache is never used
+	 * @param settings      analysis settings, as a string
+	 * @throws IOException if the report directory can't be read
+	 */
+	public ClifReportCache(File cacheDir, File reportDir, String pluginVersion, String settings)
+			throws IOException {
+		this.cacheDir = cacheDir;
+		this.fingerprint = pluginVersion == null ? null : computeFingerprint(reportDir, pluginVersion, settings);
+	}
+
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Reads back the cached analysis, if it matches the fingerprint.
+	 *
+	 * @param chartDirectory directory where the cached charts are copied
+	 * @return the cached report, or null if there is no matching cached analysis
+	 */
+	public ClifReport load(File chartDirectory) {
+		if (fingerprint == null) {
+			return null;
+		}
+		try {
+			File fingerprintFile = new File(cacheDir, FINGERPRINT_FILE);
+			if (!fingerprintFile.isFile()
+			    || !fingerprint.equals(FileUtils.readFileToString(fingerprintFile, UTF8))) {
+				return null;
+			}
+			ClifReport report = (ClifReport) ClifBuildAction.readXml(XSTREAM, new File(cacheDir, REPORT_FILE));
+			File charts = new File(cacheDir, CHART_DIRECTORY);
+			if (charts.isDirectory()) {
+				FileUtils.copyDirectory(charts, new File(chartDirectory, CHART_DIRECTORY));
+			}
+			return report;
+		}
+		catch (IOException e) {
+			return null;
+		}
+		catch (ClassCastException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Replaces the cached analysis by the given one, unless the plugin version is unknown.
+	 *
+	 * @param report         report resulting from the analysis
+	 * @param chartDirectory directory holding the charts resulting from the analysis
+	 * @throws IOException if the cache can't be written
+	 */
+	public void store(ClifReport report, File chartDirectory)
+			throws IOException {
+		FileUtils.deleteDirectory(cacheDir);
+		if (fingerprint == null) {
+			return;
+		}
+		FileUtils.forceMkdir(cacheDir);
+		ClifBuildAction.writeXml(XSTREAM, new File(cacheDir, REPORT_FILE), report);
+		File charts = new File(chartDirectory, CHART_DIRECTORY);
+		if (charts.isDirectory()) {
+			FileUtils.copyDirectory(charts, new File(cacheDir, CHART_DIRECTORY));
+		}
+		// written last, so that an incomplete cache never matches
+		FileUtils.writeStringToFile(new File(cacheDir, FINGERPRINT_FILE), fingerprint, UTF8);
+	}
+
+	/**
+	 * Computes a fingerprint of the files of a report directory,
+	 * of the plugin version and of the analysis settings.
+	 *
+	 * @param reportDir     CLIF report directory
+	 * @param pluginVersion version of the plugin performing the analysis
+	 * @param settings      analysis settings, as a string
+	 * @return the fingerprint, as an hexadecimal string
+	 * @throws IOException if the report directory can't be read
+	 */
+	static String computeFingerprint(File reportDir, String pluginVersion, String settings)
+			throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		digest.update(("plugin=" + pluginVersion + "\n" + settings + "\n").getBytes(UTF8));
+		addFiles(digest, reportDir, "");
+		return Util.toHexString(digest.digest());
+	}
+
+	private static void addFiles(MessageDigest digest, File dir, String path)
+			throws IOException {
+		String[] names = dir.list();
+		if (names == null) {
+			throw new IOException("Can't list directory " + dir);
+		}
+		Arrays.sort(names);
+		for (String name : names) {
+			File file = new File(dir, name);
+			if (file.isDirectory()) {
+				addFiles(digest, file, path + name + "/");
+			}
+			else {
+				digest.update((path + name + "," + file.length() + "," + file.lastModified() + "\n").getBytes(UTF8));
+			}
+		}
+	}
+}
@@ -1,6 +1,7 @@
 /*
  * CLIF is a Load Injection Framework
  * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
  *
  * This library is free software; you can redistribute it and/or
  * modify it under the terms of the GNU Lesser General Public
@@ -18,39 +19,31 @@
  *
  * Contact: clif@ow2.org
  */
-package org.ow2.clif.jenkins.chart.movingstatistics;
+package org.ow2.clif.jenkins;
 
-import org.jfree.data.xy.XYSeries;
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
 
 /**
- * Calculate the moving min of time series data.
+ * Keeps the {@link ClifTrendIndex} of the jobs up to date with their builds.
+ *
+ * @author Bruno Dillenseger
  */
-public class MovingMinStat extends AbstractMovingStat {
-
-	double min = Double.MAX_VALUE;
-	int n = 0;
-
-
-	@Override
-	public void resetMovingStat() {
-		this.min = Double.MAX_VALUE;
-		this.n = 0;
-	}
+@Extension
+public class ClifRunListener
+		extends RunListener<Run<?, ?>> {
 
 	@Override
-	protected void calculateMovingStatInPeriod(double xx, double yy) {
-		min = Math.min(min, yy);
-		n = n + 1;
+	public void onCompleted(Run<?, ?> build, TaskListener listener) {
+		if (build.getAction(ClifBuildAction.class) != null) {
+			ClifTrendIndex.addBuild(build);
+		}
 	}
 
 	@Override
-	protected void addMovingStatForPeriod(XYSeries result, double x) {
-		if (n > 0) {
-			result.add(x, min);
-		}
-		else {
-			result.add(x, null);
-		}
+	public void onDeleted(Run<?, ?> build) {
+		ClifTrendIndex.removeBuild(build);
 	}
-
 }
@@ -0,0 +1,558 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.ow2.clif.jenkins.model.ClifReport;
+import org.ow2.clif.jenkins.model.Measure;
+import org.ow2.clif.jenkins.model.TestPlan;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.cache.Weigher;
+import hudson.model.Job;
+import hudson.model.Result;
+import hudson.model.Run;
+
+/**
+ * Index of the aggregated measures of the builds of a job, stored in the job directory.
+ * <p>Trend graphs are built from this index rather than from the {@link ClifBuildAction}
+ * of each build, which would load all the builds of the job. Each line of the index holds
+ * the measure of an action of a test plan of a build, separated by tabulations. Lines are
+ * appended when a build completes, and removed when a build is deleted. The index is built
+ * from the builds of the job the first time it is used, or when it can't be read.
+ * Each index file is read and updated under its own lock, so that building the index
+ * of a job doesn't block the other jobs.</p>
+ * <p>The trend graphs rendered from an index are cached with the revision of the index,
+ * in a cache shared by all the jobs and bounded by the total size of the graphs. They are
+ * no longer used once a build is added or deleted, and are then evicted from the cache.</p>
+ *
+ * @author Bruno Dillenseger
+ */
+public class ClifTrendIndex {
+
+	private static final Logger LOG = Logger.getLogger(ClifTrendIndex.class.getName());
+
+	public static final String INDEX_FILE = "clif-trend.txt";
+
+	private static final String HEADER = "# CLIF trend index, version 1";
+
+	private static final int COLUMNS = 15;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// maximum total size of the rendered graphs kept in memory, in bytes
+	private static final long MAX_GRAPH_BYTES = 16 * 1024 * 1024;
+
+	// maximum number of read indexes kept in memory
+	private static final int MAX_READ_INDEXES = 100;
+
+	// lock of each index file, kept as long as it is used
+	private static final LoadingCache<File, Object> locks =
+			CacheBuilder.newBuilder().weakValues().build(new CacheLoader<File, Object>() {
+				@Override
+				public Object load(File file) {
+					return new Object();
+				}
+			});
+
+	// last read index of the most recently used index files, read again when the file changes,
+	// and released when memory is low
+	private static final Cache<File, ClifTrendIndex> readIndexes =
+			CacheBuilder.newBuilder().maximumSize(MAX_READ_INDEXES).softValues().build();
+
+	private final List<Entry> entries;
+
+	private final long fileLength;
+
+	private final long fileDate;
+
+	private final long lastModified;
+
+	// PNG images of the graphs rendered from the indexes of all the jobs, by index file, revision and graph
+	private static final Cache<String, byte[]> graphs =
+			CacheBuilder.newBuilder().maximumWeight(MAX_GRAPH_BYTES).weigher(new Weigher<String, byte[]>() {
+				public int weigh(String key, byte[] image) {
+					return key.length() * 2 + image.length;
+				}
+			}).softValues().build();
+
+	private final File file;
+
+	private ClifTrendIndex(File file, List<Entry> entries, long fileLength, long fileDate) {
+		Collections.sort(entries, new Comparator<Entry>() {
+			public int compare(Entry e1, Entry e2) {
+				return e1.buildNumber < e2.buildNumber ? -1 : (e1.buildNumber == e2.buildNumber ? 0 : 1);
+			}
+		});
+		this.file = file;
+		this.entries = Collections.unmodifiableList(entries);
+		this.fileLength = fileLength;
+		this.fileDate = fileDate;
+		this.lastModified = fileDate >= 0 ? fileDate : System.currentTimeMillis();
+	}
+
+	/**
+	 * @return the date of the last change of the index, in milliseconds
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * @return an identifier of the content of the index, which changes with the index
+	 */
+	public String getRevision() {
+		return Long.toHexString(lastModified) + "-" + Long.toHexString(fileLength);
+	}
+
+	/**
+	 * @return the number of the last indexed build, 0 if none
+	 */
+	public int getLastBuildNumber() {
+		return entries.isEmpty() ? 0 : entries.get(entries.size() - 1).buildNumber;
+	}
+
+	/**
+	 * @param key identifier of the graph
+	 * @return the PNG image of a graph rendered from this index, null if not rendered yet
+	 */
+	public byte[] getGraph(String key) {
+		if (fileDate < 0) {
+			return null;
+		}
+		return graphs.getIfPresent(getGraphKey(key));
+	}
+
+	/**
+	 * Keeps the PNG image of a graph rendered from this index.
+	 *
+	 * @param key   identifier of the graph
+	 * @param image PNG image of the graph
+	 */
+	public void putGraph(String key, byte[] image) {
+		// graphs of an index that could not be read are not kept, since the index is built again
+		if (fileDate >= 0) {
+			graphs.put(getGraphKey(key), image);
+		}
+	}
+
+	private String getGraphKey(String key) {
+		return file.getPath() + '\n' + getRevision() + '\n' + key;
+	}
+
+	/**
+	 * @return all the entries, by ascending build number
+	 */
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * @param testPlan test plan name
+	 * @param action   action name
+	 * @return the entries of an action of a test plan, at most one per build, by ascending build number
+	 */
+	public List<Entry> getEntries(String testPlan, String action) {
+		List<Entry> res = new ArrayList<Entry>();
+		for (Entry entry : entries) {
+			if (entry.testPlan.equals(testPlan) && entry.measure.getName().equals(action)
+			    && (res.isEmpty() || res.get(res.size() - 1).buildNumber != entry.buildNumber)) {
+				res.add(entry);
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Returns the index of a job, building it if needed.
+	 *
+	 * @param job job whose builds are indexed
+	 * @return the index of the job
+	 */
+	public static ClifTrendIndex getIndex(Job<?, ?> job) {
+		File file = getFile(job);
+		synchronized (getLock(file)) {
+			try {
+				if (!file.isFile()) {
+					write(file, getEntries(job, -1));
+				}
+				ClifTrendIndex index = readIndexes.getIfPresent(file);
+				if (index == null || index.fileLength != file.length() || index.fileDate != file.lastModified()) {
+					index = read(file);
+					readIndexes.put(file, index);
+				}
+				return index;
+			}
+			catch (IOException e) {
+				LOG.log(Level.WARNING, "Can't use the CLIF trend index " + file + ", it will be built again", e);
+				discard(file);
+				return new ClifTrendIndex(file, getEntries(job, -1), -1, -1);
+			}
+		}
+	}
+
+	/**
+	 * Adds the measures of a completed build to the index of its job.
+	 *
+	 * @param build build holding a {@link ClifBuildAction}
+	 */
+	public static void addBuild(Run<?, ?> build) {
+		File file = getFile(build.getParent());
+		synchronized (getLock(file)) {
+			try {
+				if (!file.isFile()) {
+					// the other builds are indexed first
+					write(file, getEntries(build.getParent(), build.getNumber()));
+				}
+				Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), UTF8);
+				try {
+					for (Entry entry : getEntries(build)) {
+						writer.write(entry.toLine());
+					}
+				}
+				finally {
+					writer.close();
+				}
+				readIndexes.invalidate(file);
+			}
+			catch (IOException e) {
+				LOG.log(Level.WARNING, "Can't update the CLIF trend index " + file + ", it will be built again", e);
+				discard(file);
+			}
+		}
+	}
+
+	/**
+	 * Removes the measures of a deleted build from the index of its job, if any.
+	 *
+	 * @param build deleted build
+	 */
+	public static void removeBuild(Run<?, ?> build) {
+		File file = getFile(build.getParent());
+		synchronized (getLock(file)) {
+			if (!file.isFile()) {
+				return;
+			}
+			try {
+				List<Entry> entries = new ArrayList<Entry>(read(file).entries);
+				boolean removed = false;
+				for (int i = entries.size() - 1; i >= 0; i--) {
+					if (entries.get(i).buildNumber == build.getNumber()) {
+						entries.remove(i);
+						removed = true;
+					}
+				}
+				if (removed) {
+					write(file, entries);
+					readIndexes.invalidate(file);
+				}
+			}
+			catch (IOException e) {
+				LOG.log(Level.WARNING, "Can't update the CLIF trend index " + file + ", it will be built again", e);
+				discard(file);
+			}
+		}
+	}
+
+	private static File getFile(Job<?, ?> job) {
+		return new File(job.getRootDir(), INDEX_FILE);
+	}
+
+	/**
+	 * @return the lock of an index file, the same for all the threads using the file at the same time
+	 */
+	private static Object getLock(File file) {
+		return locks.getUnchecked(file);
+	}
+
+	private static void discard(File file) {
+		readIndexes.invalidate(file);
+		file.delete();
+	}
+
+	/**
+	 * @param job           job whose builds are indexed
+	 * @param excludedBuild number of a build not to index, -1 for none
+	 * @return the entries of the completed builds of a job
+	 */
+	private static List<Entry> getEntries(Job<?, ?> job, int excludedBuild) {
+		List<Entry> entries = new ArrayList<Entry>();
+		for (Run<?, ?> build : job.getBuilds()) {
+			if (!build.isBuilding() && build.getNumber() != excludedBuild) {
+				entries.addAll(getEntries(build));
+			}
+		}
+		return entries;
+	}
+
+	private static List<Entry> getEntries(Run<?, ?> build) {
+		List<Entry> entries = new ArrayList<Entry>();
+		ClifBuildAction clifBuildAction = build.getAction(ClifBuildAction.class);
+		if (clifBuildAction == null) {
+			return entries;
+		}
+		ClifReport clifReport = clifBuildAction.getReport();
+		if (clifReport == null) {
+			return entries;
+		}
+		Result result = build.getResult();
+		for (TestPlan tp : clifReport.getTestplans()) {
+			if (tp.getAggregatedMeasures() != null) {
+				for (Measure m : tp.getAggregatedMeasures()) {
+					entries.add(new Entry(build.getNumber(), build.getDisplayName(),
+					                      result == null ? "" : result.toString(), tp.getName(), m));
+				}
+			}
+		}
+		return entries;
+	}
+
+	private static ClifTrendIndex read(File file)
+			throws IOException {
+		long length = file.length();
+		long date = file.lastModified();
+		List<Entry> entries = new ArrayList<Entry>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), UTF8));
+		try {
+			if (!HEADER.equals(reader.readLine())) {
+				throw new IOException("Unknown format of " + file);
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				Entry entry = Entry.fromLine(line);
+				// lines left incomplete by an interrupted update are ignored
+				if (entry != null) {
+					entries.add(entry);
+				}
+			}
+		}
+		finally {
+			reader.close();
+		}
+		return new ClifTrendIndex(file, entries, length, date);
+	}
+
+	/**
+	 * Replaces the content of the index file, through a temporary file so that
+	 * the index file is never left incomplete.
+	 */
+	private static void write(File file, List<Entry> entries)
+			throws IOException {
+		File tempFile = new File(file.getPath() + ".tmp");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), UTF8);
+		try {
+			writer.write(HEADER + "\n");
+			for (Entry entry : entries) {
+				writer.write(entry.toLine());
+			}
+		}
+		finally {
+			writer.close();
+		}
+		if (!tempFile.renameTo(file)) {
+			file.delete();
+			if (!tempFile.renameTo(file)) {
+				throw new IOException("Can't rename " + tempFile + " to " + file);
+			}
+		}
+	}
+
+	/**
+	 * Measure of an action of a test plan of a build
+	 */
+	public static final class Entry {
+
+		private final int buildNumber;
+
+		private final String buildName;
+
+		private final String result;
+
+		private final String testPlan;
+
+		private final Measure measure;
+
+		Entry(int buildNumber, String buildName, String result, String testPlan, Measure measure) {
+			this.buildNumber = buildNumber;
+			this.buildName = buildName;
+			this.result = result;
+			this.testPlan = testPlan;
+			this.measure = measure;
+		}
+
+		public int getBuildNumber() {
+			return buildNumber;
+		}
+
+		/**
+		 * @return the display name of the build when it was indexed
+		 */
+		public String getBuildName() {
+			return buildName;
+		}
+
+		/**
+		 * @return the result of the build, null if it had none
+		 */
+		public Result getResult() {
+			return result.length() == 0 ? null : Result.fromString(result);
+		}
+
+		public String getTestPlan() {
+			return testPlan;
+		}
+
+		public Measure getMeasure() {
+			return measure;
+		}
+
+		String toLine() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(buildNumber).append('\t');
+			appendEscaped(sb, buildName).append('\t');
+			appendEscaped(sb, result).append('\t');
+			appendEscaped(sb, testPlan).append('\t');
+			appendEscaped(sb, measure.getName()).append('\t');
+			sb.append(measure.getSize()).append('\t');
+			sb.append(measure.countErrors()).append('\t');
+			sb.append(measure.getAverage()).append('\t');
+			sb.append(measure.getMedian()).append('\t');
+			sb.append(measure.getMin()).append('\t');
+			sb.append(measure.getMax()).append('\t');
+			sb.append(measure.getStdDev()).append('\t');
+			sb.append(measure.getThroughput()).append('\t');
+			sb.append(measure.isSketch()).append('\t');
+			double[] ranks = measure.getPercentileRanks();
+			long[] values = measure.getPercentileValues();
+			for (int i = 0; i < ranks.length; i++) {
+				if (i > 0) {
+					sb.append(',');
+				}
+				sb.append(ranks[i]).append('=').append(values[i]);
+			}
+			sb.append('\n');
+			return sb.toString();
+		}
+
+		/**
+		 * @return the entry of a line, null if the line is incomplete
+		 */
+		static Entry fromLine(String line) {
+			String[] fields = line.split("\t", -1);
+			if (fields.length != COLUMNS) {
+				return null;
+			}
+			try {
+				Measure measure = new Measure(unescape(fields[4]), Long.parseLong(fields[5]), Long.parseLong(fields[7]),
+				                              Long.parseLong(fields[8]), Long.parseLong(fields[9]),
+				                              Long.parseLong(fields[10]), Double.parseDouble(fields[11]),
+				                              Double.parseDouble(fields[12]), Long.parseLong(fields[6]));
+				measure.setSketch(Boolean.parseBoolean(fields[13]));
+				if (fields[14].length() > 0) {
+					String[] percentiles = fields[14].split(",");
+					double[] ranks = new double[percentiles.length];
+					long[] values = new long[percentiles.length];
+					for (int i = 0; i < percentiles.length; i++) {
+						int separator = percentiles[i].indexOf('=');
+						if (separator < 0) {
+							return null;
+						}
+						ranks[i] = Double.parseDouble(percentiles[i].substring(0, separator));
+						values[i] = Long.parseLong(percentiles[i].substring(separator + 1));
+					}
+					measure.setPercentiles(ranks, values);
+				}
+				return new Entry(Integer.parseInt(fields[0]), unescape(fields[1]), unescape(fields[2]),
+				                 unescape(fields[3]), measure);
+			}
+			catch (NumberFormatException e) {
+				return null;
+			}
+		}
+
+		private static StringBuilder appendEscaped(StringBuilder sb, String value) {
+			if (value == null) {
+				return sb;
+			}
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				switch (c) {
+					case '\\':
+						sb.append("\\\\");
+						break;
+					case '\t':
+						sb.append("\\t");
+						break;
+					case '\n':
+						sb.append("\\n");
+						break;
+					case '\r':
+						sb.append("\\r");
+						break;
+					default:
+						sb.append(c);
+				}
+			}
+			return sb;
+		}
+
+		private static String unescape(String value) {
+			if (value.indexOf('\\') < 0) {
+				return value;
+			}
+			StringBuilder sb = new StringBuilder(value.length());
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '\\' && i + 1 < value.length()) {
+					c = value.charAt(++i);
+					if (c == 't') {
+						c = '\t';
+					}
+					else if (c == 'n') {
+						c = '\n';
+					}
+					else if (c == 'r') {
+						c = '\r';
+					}
+				}
+				sb.append(c);
+			}
+			return sb.toString();
+		}
+	}
+}
@@ -22,24 +22,60 @@ package org.ow2.clif.jenkins.chart;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import javax.imageio.ImageIO;
-import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.io.IOUtils;
 import org.jfree.chart.JFreeChart;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
 /**
+ * Chart of a measure, saved as a PNG image file.<br>
+ * The image can be rendered at once, or the chart can be saved in a compact data
+ * file instead, and rendered the first time its image is requested. Data files
+ * only hold the chart configuration and the plain values of the chart, which are
+ * read back into a chart of the requested type: no object is ever deserialized.
+ *
  * @author Julien Coste
  */
 public abstract class AbstractChart {
+
+	/**
+	 * Extension of the files holding the data of the charts to render on demand
+	 */
+	public static final String DATA_FILE_EXTENSION = ".chart";
+
+	// first int of the data files, changed with their format
+	private static final int DATA_FILE_MAGIC = 0x434c4901;
+
+	// number of values allocated at once when reading arrays, so that the memory
+	// allocated never exceeds much the size of the data actually read
+	private static final int READ_CHUNK_SIZE = 1 << 16;
+
+	/**
+	 * Number of seconds a browser may use a chart image without checking it again
+	 */
+	private static final int IMAGE_MAX_AGE = 24 * 60 * 60;
+
 	protected final ChartId chartId;
 
-	protected final ChartConfiguration chartConfiguration;
+	protected ChartConfiguration chartConfiguration;
 
 	public AbstractChart(String chartType, String bladeId, String testplan, String event,
 	                     ChartConfiguration chartConfiguration) {
@@ -54,18 +90,36 @@ public abstract class AbstractChart {
 	private void saveImageFile(File imageFile, BufferedImage bImage) {
 		OutputStream os = null;
 		try {
-			os = new FileOutputStream(imageFile);
-			ImageIO.write(bImage, "png", os);
+			// written in a temporary file, so that an image being rendered on demand
+			// is never read incomplete
+			File tempFile = File.createTempFile(this.chartId.getId(), ".tmp", imageFile.getParentFile());
+			try {
+				os = new FileOutputStream(tempFile);
+				ImageIO.write(bImage, "png", os);
+				os.close();
+				if (!tempFile.renameTo(imageFile) && !imageFile.isFile()) {
+					throw new IOException("Can't rename " + tempFile + " to " + imageFile);
+				}
+			}
+			finally {
+				IOUtils.closeQuietly(os);
+				tempFile.delete();
+			}
 		}
 		catch (IOException e) {
 			e.printStackTrace();
 		}
-		finally {
-			IOUtils.closeQuietly(os);
-		}
 	}
 
 	private File getImageFile(File rootDir) {
+		return new File(getChartDir(rootDir), this.chartId.getId() + ".png");
+	}
+
+	private File getDataFile(File rootDir) {
+		return new File(getChartDir(rootDir), this.chartId.getId() + DATA_FILE_EXTENSION);
+	}
+
+	private File getChartDir(File rootDir) {
 		File clifImageDir = new File(rootDir, "clif");
 		if (clifImageDir.exists()) {
 			if (!clifImageDir.isDirectory()) {
@@ -76,26 +130,118 @@ public abstract class AbstractChart {
 			}
 		}
 		else {
-			if (!clifImageDir.mkdirs()) {
+			// the directory may be created meanwhile by a chart rendered in parallel
+			if (!clifImageDir.mkdirs() && !clifImageDir.isDirectory()) {
 				throw new IllegalStateException(
 						"Impossible to create directory " + clifImageDir.getAbsolutePath());
 			}
 		}
+		return clifImageDir;
+	}
+
+	/**
+	 * Saves the data of this chart instead of rendering it, so that it is rendered
+	 * the first time its image is requested.
+	 *
+	 * @param rootDir directory where charts are saved, in its clif sub-directory
+	 */
+	public void saveData(File rootDir) {
+		File dataFile = getDataFile(rootDir);
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(dataFile))));
+			try {
+				out.writeInt(DATA_FILE_MAGIC);
+				this.chartConfiguration.writeTo(out);
+				writeData(out);
+			}
+			finally {
+				out.close();
+			}
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Impossible to save chart data in " + dataFile.getAbsolutePath(), e);
+		}
+	}
 
-		return new File(clifImageDir, this.chartId.getId() + ".png");
+	/**
+	 * Returns the image file of this chart, rendering it first from the saved
+	 * data of the chart if it has not been rendered yet. The configuration and
+	 * the values of this chart are then replaced by the saved ones.
+	 *
+	 * @param rootDir directory where charts are saved, in its clif sub-directory
+	 * @return the image file, or null if the chart has neither been rendered nor saved
+	 * @throws IOException if the saved data of the chart can't be read
+	 */
+	public File getRenderedImageFile(File rootDir)
+			throws IOException {
+		File imageFile = getImageFile(rootDir);
+		if (imageFile.isFile()) {
+			return imageFile;
+		}
+		File dataFile = getDataFile(rootDir);
+		try {
+			DataInputStream in =
+					new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(dataFile))));
+			try {
+				if (in.readInt() != DATA_FILE_MAGIC) {
+					throw new IOException("Invalid chart data in " + dataFile.getAbsolutePath());
+				}
+				this.chartConfiguration = ChartConfiguration.readFrom(in);
+				readData(in);
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch (FileNotFoundException e) {
+			// not saved, or just rendered by another request
+			return imageFile.isFile() ? imageFile : null;
+		}
+		catch (IllegalArgumentException e) {
+			throw new IOException("Invalid chart data in " + dataFile.getAbsolutePath(), e);
+		}
+		createChart(rootDir);
+		if (!imageFile.isFile()) {
+			return null;
+		}
+		// the image replaces the data
+		dataFile.delete();
+		return imageFile;
 	}
 
 
 	public void doPng(File rootDir, StaplerRequest req, StaplerResponse rsp)
 			throws IOException {
 
-		File imageFile = getImageFile(rootDir);
-
 		try {
-			BufferedImage bufferedImage = ImageIO.read(imageFile);
+			File imageFile = getRenderedImageFile(rootDir);
+			if (imageFile == null) {
+				// chart not generated for this measure
+				rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+				return;
+			}
+
+			// the image of a chart never changes once rendered: let the browser cache it,
+			// and send the bytes of the file as they are
+			long lastModified = imageFile.lastModified();
+			String etag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(imageFile.length()) + "\"";
+			rsp.setHeader("ETag", etag);
+			rsp.setHeader("Cache-Control", "private, max-age=" + IMAGE_MAX_AGE);
+			String ifNoneMatch = req.getHeader("If-None-Match");
+			if (ifNoneMatch != null) {
+				if (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*")) {
+					rsp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+					return;
+				}
+			}
+			else if (req.checkIfModified(lastModified, rsp, IMAGE_MAX_AGE * 1000L)) {
+				return;
+			}
 			rsp.setContentType("image/png");
-			ServletOutputStream os = rsp.getOutputStream();
-			ImageIO.write(bufferedImage, "PNG", os);
+			rsp.setContentLength((int) imageFile.length());
+			OutputStream os = rsp.getOutputStream();
+			Files.copy(imageFile.toPath(), os);
 			os.close();
 		}
 		catch (Error e) {
@@ -153,4 +299,74 @@ public abstract class AbstractChart {
 	}
 
 	protected abstract JFreeChart createChart();
+
+	/**
+	 * Writes the values of this chart, as plain data.
+	 *
+	 * @param out data file being written
+	 * @throws IOException if the values can't be written
+	 */
+	protected abstract void writeData(DataOutput out)
+			throws IOException;
+
+	/**
+	 * Reads the values written by {@link #writeData(DataOutput)}, replacing the values of this chart.
+	 *
+	 * @param in data file being read
+	 * @throws IOException if the values can't be read, or are invalid
+	 */
+	protected abstract void readData(DataInput in)
+			throws IOException;
+
+	protected static void writeDoubles(DataOutput out, double[] values, int size)
+			throws IOException {
+		out.writeInt(size);
+		for (int i = 0; i < size; i++) {
+			out.writeDouble(values[i]);
+		}
+	}
+
+	protected static double[] readDoubles(DataInput in)
+			throws IOException {
+		int size = readSize(in);
+		// the array grows with the values actually read, whatever the size read
+		double[] values = new double[Math.min(size, READ_CHUNK_SIZE)];
+		for (int i = 0; i < size; i++) {
+			if (i == values.length) {
+				values = Arrays.copyOf(values, (int) Math.min(size, 2L * i));
+			}
+			values[i] = in.readDouble();
+		}
+		return values;
+	}
+
+	protected static void writeLongs(DataOutput out, long[] values)
+			throws IOException {
+		out.writeInt(values.length);
+		for (long value : values) {
+			out.writeLong(value);
+		}
+	}
+
+	protected static long[] readLongs(DataInput in)
+			throws IOException {
+		int size = readSize(in);
+		long[] values = new long[Math.min(size, READ_CHUNK_SIZE)];
+		for (int i = 0; i < size; i++) {
+			if (i == values.length) {
+				values = Arrays.copyOf(values, (int) Math.min(size, 2L * i));
+			}
+			values[i] = in.readLong();
+		}
+		return values;
+	}
+
+	protected static int readSize(DataInput in)
+			throws IOException {
+		int size = in.readInt();
+		if (size < 0) {
+			throw new IOException("Invalid chart data size: " + size);
+		}
+		return size;
+	}
 }
@@ -0,0 +1,101 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.chart;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.jfree.data.DomainOrder;
+import org.jfree.data.xy.AbstractXYDataset;
+
+/**
+ * Read-only dataset whose series are backed by arrays of primitive values.<br>
+ * Unlike a collection of XYSeries, adding a series neither copies its values
+ * nor creates an object per point, and values are read without boxing.
+ * The points of each series must be sorted by ascending x.
+ *
+ * @author Bruno Dillenseger
+ */
+class ArrayXYDataset
+		extends AbstractXYDataset {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<Comparable> keys = new ArrayList<Comparable>();
+
+	private final List<double[]> xValues = new ArrayList<double[]>();
+
+	private final List<double[]> yValues = new ArrayList<double[]>();
+
+	private final List<Integer> counts = new ArrayList<Integer>();
+
+	/**
+	 * Adds a series, the arrays being used without copy.
+	 *
+	 * @param key   key of the series, shown by the legend
+	 * @param x     x values, in ascending order
+	 * @param y     y values
+	 * @param count number of points of the series, at the beginning of the arrays
+	 */
+	public void addSeries(Comparable key, double[] x, double[] y, int count) {
+		keys.add(key);
+		xValues.add(x);
+		yValues.add(y);
+		counts.add(count);
+	}
+
+	@Override
+	public int getSeriesCount() {
+		return keys.size();
+	}
+
+	@Override
+	public Comparable getSeriesKey(int series) {
+		return keys.get(series);
+	}
+
+	public int getItemCount(int series) {
+		return counts.get(series);
+	}
+
+	@Override
+	public DomainOrder getDomainOrder() {
+		return DomainOrder.ASCENDING;
+	}
+
+	public Number getX(int series, int item) {
+		return getXValue(series, item);
+	}
+
+	public Number getY(int series, int item) {
+		return getYValue(series, item);
+	}
+
+	@Override
+	public double getXValue(int series, int item) {
+		return xValues.get(series)[item];
+	}
+
+	@Override
+	public double getYValue(int series, int item) {
+		return yValues.get(series)[item];
+	}
+}
@@ -21,16 +21,20 @@
 package org.ow2.clif.jenkins.chart;
 
 import java.awt.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.NumberAxis;
 import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.chart.plot.XYPlot;
 import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
-import org.jfree.data.xy.XYSeries;
-import org.jfree.data.xy.XYSeriesCollection;
+import org.jfree.chart.title.TextTitle;
 import org.jfree.ui.RectangleInsets;
 import org.jfree.util.ShapeUtilities;
+import org.ow2.clif.jenkins.chart.movingstatistics.MovingStatistics;
 import org.ow2.clif.jenkins.parser.clif.Messages;
 
 /**
@@ -43,11 +47,15 @@ public class CallChart
 
 	protected boolean scatterPlot;
 
-	protected final XYSeries eventSerie;
+	// points, as primitive arrays rather than an XYSeries of boxed values
+	protected double[] dates = new double[16];
+
+	protected double[] values = new double[16];
+
+	protected int size;
 
 	public CallChart(String testplan, String bladeId, String event, ChartConfiguration chartConfiguration) {
 		super("Call", bladeId, testplan, event, chartConfiguration);
-		this.eventSerie = new XYSeries(event);
 	}
 
 	public void setScatterPlot(boolean scatterPlot) {
@@ -55,13 +63,66 @@ public class CallChart
 	}
 
 	public void addData(double x, double y) {
-		this.eventSerie.add(x, y);
+		if (size == dates.length) {
+			int capacity = size + (size >> 1) + 1;
+			dates = Arrays.copyOf(dates, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		dates[size] = x;
+		values[size] = y;
+		size++;
+	}
+
+	/**
+	 * Replaces the points of the chart, the arrays being used without copy.
+	 * They are only modified if they are not sorted by date, so that charts may share them.
+	 *
+	 * @param x dates of the points
+	 * @param y values of the points
+	 */
+	public void setData(double[] x, double[] y) {
+		this.dates = x;
+		this.values = y;
+		this.size = x.length;
+	}
+
+	@Override
+	protected void writeData(DataOutput out)
+			throws IOException {
+		out.writeBoolean(scatterPlot);
+		writeDoubles(out, dates, size);
+		writeDoubles(out, values, size);
+	}
+
+	@Override
+	protected void readData(DataInput in)
+			throws IOException {
+		scatterPlot = in.readBoolean();
+		double[] x = readDoubles(in);
+		double[] y = readDoubles(in);
+		if (x.length != y.length) {
+			throw new IOException("Invalid chart data: " + x.length + " dates for " + y.length + " values");
+		}
+		setData(x, y);
+	}
+
+	/**
+	 * @return true if the points are too many to be drawn one by one
+	 */
+	public boolean isDensityPlot() {
+		int threshold = this.chartConfiguration.getScatterDensityThreshold();
+		return this.scatterPlot && threshold > 0 && size > threshold;
 	}
 
 	@Override
 	protected JFreeChart createChart() {
-		XYSeriesCollection dataset = new XYSeriesCollection();
-		dataset.addSeries(this.eventSerie);
+		if (isDensityPlot()) {
+			return createDensityChart();
+		}
+		// points sorted by date, as required by the dataset
+		MovingStatistics.sortByX(dates, values, size);
+		ArrayXYDataset dataset = new ArrayXYDataset();
+		dataset.addSeries(this.chartId.getEvent(), dates, values, size);
 
 		JFreeChart chart;
 		if (this.scatterPlot) {
@@ -87,13 +148,7 @@ public class CallChart
 			);
 		}
 
-		chart.setBackgroundPaint(Color.white);
-		// get a reference to the plot for further customisation...
-		XYPlot plot = (XYPlot) chart.getPlot();
-		plot.setBackgroundPaint(Color.lightGray);
-		plot.setAxisOffset(new RectangleInsets(5.0, 5.0, 5.0, 5.0));
-		plot.setDomainGridlinePaint(Color.white);
-		plot.setRangeGridlinePaint(Color.white);
+		XYPlot plot = customizePlot(chart);
 
 		Shape cross = ShapeUtilities.createDiamond(3);
 
@@ -114,5 +169,58 @@ public class CallChart
 		return chart;
 	}
 
+	/**
+	 * Creates a chart of the density of the points, whose cost does not depend
+	 * on the number of points, see {@link DensityAnnotation}.
+	 */
+	private JFreeChart createDensityChart() {
+		// no series: the points are drawn by an annotation, and the axes are set from their bounds
+		JFreeChart chart = ChartFactory.createScatterPlot(getBasicTitle(), Messages.CallChart_Time(),
+		                                                  Messages.CallChart_ResponseTime(), new ArrayXYDataset(),
+		                                                  PlotOrientation.VERTICAL, false, false, false);
+		chart.addSubtitle(new TextTitle(Messages.CallChart_Density(size)));
+		XYPlot plot = customizePlot(chart);
+
+		// 0 on both axes, as for the scatter plot
+		double minX = 0;
+		double maxX = 0;
+		double minY = 0;
+		double maxY = 0;
+		for (int i = 0; i < size; i++) {
+			minX = Math.min(minX, dates[i]);
+			maxX = Math.max(maxX, dates[i]);
+			minY = Math.min(minY, values[i]);
+			maxY = Math.max(maxY, values[i]);
+		}
+		NumberAxis rangeAxis = (NumberAxis) plot.getRangeAxis();
+		rangeAxis.setStandardTickUnits(NumberAxis.createIntegerTickUnits());
+		setRange(rangeAxis, minY, maxY);
+		setRange((NumberAxis) plot.getDomainAxis(), minX, maxX);
+
+		plot.addAnnotation(new DensityAnnotation(dates, values, size));
+		return chart;
+	}
+
+	private static XYPlot customizePlot(JFreeChart chart) {
+		chart.setBackgroundPaint(Color.white);
+		// get a reference to the plot for further customisation...
+		XYPlot plot = (XYPlot) chart.getPlot();
+		plot.setBackgroundPaint(Color.lightGray);
+		plot.setAxisOffset(new RectangleInsets(5.0, 5.0, 5.0, 5.0));
+		plot.setDomainGridlinePaint(Color.white);
+		plot.setRangeGridlinePaint(Color.white);
+		return plot;
+	}
+
+	/**
+	 * Sets the range of an axis including zero, with its margins, as an automatic range would be.
+	 */
+	private static void setRange(NumberAxis axis, double min, double max) {
+		double length = max > min ? max - min : 1;
+		// no margin below a zero bound
+		double lower = min < 0 ? min - length * axis.getLowerMargin() : min;
+		axis.setRange(lower, min + length * (1 + axis.getUpperMargin()));
+	}
+
 
 }
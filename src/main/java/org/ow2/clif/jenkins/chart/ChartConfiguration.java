@@ -20,10 +20,19 @@
  */
 package org.ow2.clif.jenkins.chart;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
 /**
  * This class holds all configuration parmaeters to genertae charts
  */
-public class ChartConfiguration {
+public class ChartConfiguration
+		implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
 
 	private int chartWidth = 1200;
 
@@ -35,6 +44,16 @@ public class ChartConfiguration {
 
 	private int statisticalPeriod = 5;
 
+	private boolean movingPercentiles;
+
+	private double[] movingPercentileRanks = {90, 95, 99};
+
+	private int renderingParallelism = 1;
+
+	private boolean lazyRendering;
+
+	private int scatterDensityThreshold;
+
 	public ChartConfiguration(int chartHeight, int chartWidth, int distributionSliceNumber, int distributionSliceSize,
 	                          int statisticalPeriod) {
 		this.chartHeight = chartHeight;
@@ -44,6 +63,63 @@ public class ChartConfiguration {
 		this.statisticalPeriod = statisticalPeriod;
 	}
 
+	/**
+	 * Writes the settings used to render a chart, for {@link #readFrom(DataInput)}.
+	 *
+	 * @param out output the settings are written to
+	 * @throws IOException if the settings can't be written
+	 */
+	public void writeTo(DataOutput out)
+			throws IOException {
+		out.writeInt(chartHeight);
+		out.writeInt(chartWidth);
+		out.writeInt(distributionSliceNumber);
+		out.writeInt(distributionSliceSize);
+		out.writeInt(statisticalPeriod);
+		out.writeBoolean(movingPercentiles);
+		out.writeInt(movingPercentileRanks.length);
+		for (double rank : movingPercentileRanks) {
+			out.writeDouble(rank);
+		}
+		out.writeInt(scatterDensityThreshold);
+	}
+
+	/**
+	 * Reads the settings written by {@link #writeTo(DataOutput)}.
+	 *
+	 * @param in input the settings are read from
+	 * @return the chart configuration
+	 * @throws IOException              if the settings can't be read
+	 * @throws IllegalArgumentException if the settings are invalid
+	 */
+	public static ChartConfiguration readFrom(DataInput in)
+			throws IOException {
+		int chartHeight = in.readInt();
+		int chartWidth = in.readInt();
+		int distributionSliceNumber = in.readInt();
+		int distributionSliceSize = in.readInt();
+		int statisticalPeriod = in.readInt();
+		if (chartHeight <= 0 || chartWidth <= 0 || distributionSliceNumber <= 0 || distributionSliceSize <= 0
+		    || statisticalPeriod <= 0) {
+			throw new IllegalArgumentException("invalid chart configuration");
+		}
+		ChartConfiguration configuration =
+				new ChartConfiguration(chartHeight, chartWidth, distributionSliceNumber, distributionSliceSize,
+				                       statisticalPeriod);
+		configuration.setMovingPercentiles(in.readBoolean());
+		int rankNumber = in.readInt();
+		if (rankNumber < 0 || rankNumber > 100) {
+			throw new IllegalArgumentException("invalid number of moving percentiles: " + rankNumber);
+		}
+		double[] ranks = new double[rankNumber];
+		for (int i = 0; i < rankNumber; i++) {
+			ranks[i] = in.readDouble();
+		}
+		configuration.setMovingPercentileRanks(ranks);
+		configuration.setScatterDensityThreshold(in.readInt());
+		return configuration;
+	}
+
 	public int getChartHeight() {
 		return chartHeight;
 	}
@@ -83,4 +159,70 @@ public class ChartConfiguration {
 	public void setStatisticalPeriod(int statisticalPeriod) {
 		this.statisticalPeriod = statisticalPeriod;
 	}
+
+	/**
+	 * @return true if moving percentiles are drawn on moving statistic charts
+	 */
+	public boolean isMovingPercentiles() {
+		return movingPercentiles;
+	}
+
+	public void setMovingPercentiles(boolean movingPercentiles) {
+		this.movingPercentiles = movingPercentiles;
+	}
+
+	/**
+	 * @return percentiles drawn on moving statistic charts when moving percentiles are enabled
+	 */
+	public double[] getMovingPercentileRanks() {
+		return movingPercentileRanks.clone();
+	}
+
+	public void setMovingPercentileRanks(double... movingPercentileRanks) {
+		for (double rank : movingPercentileRanks) {
+			if (!(rank > 0 && rank <= 100)) {
+				throw new IllegalArgumentException("invalid percentile value: " + rank);
+			}
+		}
+		this.movingPercentileRanks = movingPercentileRanks.clone();
+	}
+
+	/**
+	 * @return maximum number of charts rendered at the same time
+	 */
+	public int getRenderingParallelism() {
+		return renderingParallelism;
+	}
+
+	public void setRenderingParallelism(int renderingParallelism) {
+		if (renderingParallelism <= 0) {
+			throw new IllegalArgumentException("renderingParallelism should be greater than zero");
+		}
+		this.renderingParallelism = renderingParallelism;
+	}
+
+	/**
+	 * @return true if charts are rendered the first time they are displayed, rather than when analyzed
+	 */
+	public boolean isLazyRendering() {
+		return lazyRendering;
+	}
+
+	public void setLazyRendering(boolean lazyRendering) {
+		this.lazyRendering = lazyRendering;
+	}
+
+	/**
+	 * @return number of points above which scatter plots are drawn as density maps, 0 for never
+	 */
+	public int getScatterDensityThreshold() {
+		return scatterDensityThreshold;
+	}
+
+	public void setScatterDensityThreshold(int scatterDensityThreshold) {
+		if (scatterDensityThreshold < 0) {
+			throw new IllegalArgumentException("scatterDensityThreshold should not be negative");
+		}
+		this.scatterDensityThreshold = scatterDensityThreshold;
+	}
 }
@@ -0,0 +1,159 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.chart;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders charts into PNG files, possibly with a bounded pool of worker threads.
+ * In lazy mode, charts are not rendered but their data are saved, so that they are
+ * rendered on demand (see {@link AbstractChart#saveData(File)}).<br>
+ * With a parallelism of 1, charts are rendered by the calling thread as soon as
+ * they are submitted. Otherwise, they are rendered concurrently by the workers.
+ * The number of charts waiting to be rendered is bounded: when all workers are busy
+ * and the queue is full, the submitting thread renders the chart itself, so that
+ * the memory held by pending charts does not grow with the number of measures.
+ *
+ * @author Bruno Dillenseger
+ */
+public class ChartRenderer {
+
+	private final File rootDir;
+
+	private final boolean lazy;
+
+	private final ThreadPoolExecutor executor;
+
+	private final List<Future<?>> renderings = new ArrayList<Future<?>>();
+
+	/**
+	 * @param rootDir     directory where charts are saved, in its clif sub-directory
+	 * @param parallelism maximum number of charts rendered at the same time
+	 */
+	public ChartRenderer(File rootDir, int parallelism) {
+		this(rootDir, parallelism, false);
+	}
+
+	/**
+	 * @param rootDir     directory where charts are saved, in its clif sub-directory
+	 * @param parallelism maximum number of charts rendered at the same time
+	 * @param lazy        true to save the data of the charts instead of rendering them
+	 */
+	public ChartRenderer(File rootDir, int parallelism, boolean lazy) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("parallelism should be greater than zero");
+		}
+		this.rootDir = rootDir;
+		this.lazy = lazy;
+		if (parallelism > 1) {
+			this.executor = new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+			                                       new ArrayBlockingQueue<Runnable>(parallelism),
+			                                       new ThreadPoolExecutor.CallerRunsPolicy());
+		}
+		else {
+			this.executor = null;
+		}
+	}
+
+	/**
+	 * Renders a chart, or submits it to the workers.
+	 *
+	 * @param chart chart to render
+	 */
+	public void render(final AbstractChart chart) {
+		if (executor == null) {
+			save(chart);
+			return;
+		}
+		Future<?> rendering = executor.submit(new Runnable() {
+			public void run() {
+				save(chart);
+			}
+		});
+		synchronized (renderings) {
+			renderings.add(rendering);
+		}
+	}
+
+	private void save(AbstractChart chart) {
+		if (lazy) {
+			chart.saveData(rootDir);
+		}
+		else {
+			chart.createChart(rootDir);
+		}
+	}
+
+	/**
+	 * Waits for all the submitted charts to be rendered, and stops the workers.
+	 * The renderer can't be used anymore.
+	 *
+	 * @throws InterruptedException if interrupted while waiting for the charts
+	 */
+	public void finish()
+			throws InterruptedException {
+		if (executor == null) {
+			return;
+		}
+		try {
+			List<Future<?>> pending;
+			synchronized (renderings) {
+				pending = new ArrayList<Future<?>>(renderings);
+				renderings.clear();
+			}
+			for (Future<?> rendering : pending) {
+				try {
+					rendering.get();
+				}
+				catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					}
+					if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw new IllegalStateException("Chart rendering failed", cause);
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Stops the workers without waiting for the submitted charts, after a failure.
+	 */
+	public void abort() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.chart;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import org.jfree.chart.annotations.AbstractXYAnnotation;
+import org.jfree.chart.axis.ValueAxis;
+import org.jfree.chart.plot.PlotRenderingInfo;
+import org.jfree.chart.plot.XYPlot;
+
+/**
+ * Draws a large number of points as a density map rather than as shapes.<br>
+ * The data area is divided into cells of {@value #CELL_SIZE} pixels, the points are counted
+ * in their cell in a single pass, and the cells are drawn as one image, from blue for the
+ * least populated ones to red for the most populated ones (on a logarithmic scale).
+ * Empty cells are transparent.
+ *
+ * @author Bruno Dillenseger
+ */
+class DensityAnnotation
+		extends AbstractXYAnnotation {
+
+	private static final long serialVersionUID = 1L;
+
+	static final int CELL_SIZE = 2;
+
+	private final double[] x;
+
+	private final double[] y;
+
+	private final int size;
+
+	DensityAnnotation(double[] x, double[] y, int size) {
+		this.x = x;
+		this.y = y;
+		this.size = size;
+	}
+
+	@Override
+	public void draw(Graphics2D g2, XYPlot plot, Rectangle2D dataArea, ValueAxis domainAxis, ValueAxis rangeAxis,
+	                 int rendererIndex, PlotRenderingInfo info) {
+		int columns = (int) Math.ceil(dataArea.getWidth() / CELL_SIZE);
+		int rows = (int) Math.ceil(dataArea.getHeight() / CELL_SIZE);
+		if (columns <= 0 || rows <= 0) {
+			return;
+		}
+		int[] counts = countPoints(columns, rows, domainAxis.getLowerBound(), domainAxis.getUpperBound(),
+		                           rangeAxis.getLowerBound(), rangeAxis.getUpperBound());
+		int maxCount = 0;
+		for (int count : counts) {
+			maxCount = Math.max(maxCount, count);
+		}
+		if (maxCount == 0) {
+			return;
+		}
+
+		BufferedImage image = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_ARGB);
+		double logMax = Math.log(maxCount);
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				int count = counts[row * columns + column];
+				if (count > 0) {
+					// from blue (hue 2/3) to red (hue 0)
+					double ratio = maxCount > 1 ? Math.log(count) / logMax : 1;
+					image.setRGB(column, row, Color.HSBtoRGB((float) (2 * (1 - ratio) / 3), 1f, 1f));
+				}
+			}
+		}
+		g2.drawImage(image, (int) dataArea.getMinX(), (int) dataArea.getMinY(), columns * CELL_SIZE,
+		             rows * CELL_SIZE, null);
+	}
+
+	/**
+	 * Counts the points in each cell of a grid covering the given ranges, the points
+	 * out of the ranges being ignored.
+	 *
+	 * @return number of points of each cell, row after row from the top left cell
+	 */
+	int[] countPoints(int columns, int rows, double minX, double maxX, double minY, double maxY) {
+		int[] counts = new int[columns * rows];
+		double xScale = columns / (maxX - minX);
+		double yScale = rows / (maxY - minY);
+		for (int i = 0; i < size; i++) {
+			if (x[i] < minX || x[i] > maxX || y[i] < minY || y[i] > maxY) {
+				continue;
+			}
+			int column = Math.min(columns - 1, (int) ((x[i] - minX) * xScale));
+			int row = Math.min(rows - 1, (int) ((maxY - y[i]) * yScale));
+			counts[row * columns + column]++;
+		}
+		return counts;
+	}
+}
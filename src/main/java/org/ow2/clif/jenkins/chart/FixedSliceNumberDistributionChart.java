@@ -23,6 +23,9 @@ package org.ow2.clif.jenkins.chart;
 
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
@@ -33,8 +36,13 @@ import org.jfree.chart.axis.NumberTick;
 import org.jfree.chart.axis.Tick;
 import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.data.statistics.HistogramDataset;
+import org.jfree.data.statistics.SimpleHistogramBin;
+import org.jfree.data.statistics.SimpleHistogramDataset;
+import org.jfree.data.xy.DefaultIntervalXYDataset;
+import org.jfree.data.xy.IntervalXYDataset;
 import org.jfree.ui.RectangleEdge;
 import org.jfree.ui.TextAnchor;
+import org.ow2.clif.jenkins.model.LatencyHistogram;
 import org.ow2.clif.jenkins.parser.clif.Messages;
 
 /**
@@ -46,19 +54,98 @@ import org.ow2.clif.jenkins.parser.clif.Messages;
 public class FixedSliceNumberDistributionChart
 		extends AbstractChart {
 
-	protected HistogramDataset data = new HistogramDataset();
+	protected IntervalXYDataset data = new HistogramDataset();
 
 	public FixedSliceNumberDistributionChart(String testplan, String bladeId, String event,
 	                                         ChartConfiguration chartConfiguration) {
 		super("FixedSliceNumberDistribution", bladeId, testplan, event, chartConfiguration);
-
-		this.data = new HistogramDataset();
 	}
 
 	public void addData(double[] values) {
 		if (values != null && values.length > 0) {
-			data.addSeries(this.chartId.getEvent(), values, this.chartConfiguration.getDistributionSliceNumber());
+			HistogramDataset dataset = new HistogramDataset();
+			dataset.addSeries(this.chartId.getEvent(), values, this.chartConfiguration.getDistributionSliceNumber());
+			this.data = dataset;
+		}
+	}
+
+	/**
+	 * Builds the distribution from a histogram: the values of each histogram bucket
+	 * are counted in the slice holding the bucket value.
+	 *
+	 * @param histogram histogram of the values
+	 */
+	public void addData(LatencyHistogram histogram) {
+		if (histogram.getN() > 0) {
+			int sliceNumber = this.chartConfiguration.getDistributionSliceNumber();
+			double min = histogram.getMin();
+			double max = histogram.getMax();
+			double sliceSize = (max > min) ? (max - min) / sliceNumber : 1;
+			SimpleHistogramDataset dataset = new SimpleHistogramDataset(this.chartId.getEvent());
+			SimpleHistogramBin[] bins = new SimpleHistogramBin[sliceNumber];
+			for (int i = 0; i < sliceNumber; i++) {
+				// same bounds as the HistogramDataset bins
+				double lower = min + i * sliceSize;
+				double upper = (i == sliceNumber - 1 && max > min) ? max : min + (i + 1) * sliceSize;
+				bins[i] = new SimpleHistogramBin(lower, upper, true, i == sliceNumber - 1);
+			}
+			for (int bucket = 0; bucket < histogram.getBucketNumber(); bucket++) {
+				long count = histogram.getBucketCount(bucket);
+				if (count > 0) {
+					int slice = (int) ((histogram.getBucketValue(bucket) - min) / sliceSize);
+					SimpleHistogramBin bin = bins[Math.min(slice, sliceNumber - 1)];
+					bin.setItemCount((int) Math.min(Integer.MAX_VALUE, bin.getItemCount() + count));
+				}
+			}
+			for (SimpleHistogramBin bin : bins) {
+				dataset.addBin(bin);
+			}
+			dataset.setAdjustForBinSize(false);
+			this.data = dataset;
+		}
+	}
+
+	/**
+	 * Writes the slices of the distribution: their bounds, center and number of values.
+	 */
+	@Override
+	protected void writeData(DataOutput out)
+			throws IOException {
+		boolean hasSeries = data.getSeriesCount() != 0;
+		out.writeBoolean(hasSeries);
+		if (hasSeries) {
+			int n = data.getItemCount(0);
+			double[][] slices = new double[4][n];
+			for (int i = 0; i < n; i++) {
+				slices[0][i] = data.getXValue(0, i);
+				slices[1][i] = data.getStartXValue(0, i);
+				slices[2][i] = data.getEndXValue(0, i);
+				slices[3][i] = data.getYValue(0, i);
+			}
+			for (double[] values : slices) {
+				writeDoubles(out, values, n);
+			}
+		}
+	}
+
+	@Override
+	protected void readData(DataInput in)
+			throws IOException {
+		if (!in.readBoolean()) {
+			this.data = new HistogramDataset();
+			return;
+		}
+		double[] x = readDoubles(in);
+		double[] startX = readDoubles(in);
+		double[] endX = readDoubles(in);
+		double[] y = readDoubles(in);
+		int n = x.length;
+		if (n == 0 || startX.length != n || endX.length != n || y.length != n) {
+			throw new IOException("Invalid chart data: inconsistent slices");
 		}
+		DefaultIntervalXYDataset dataset = new DefaultIntervalXYDataset();
+		dataset.addSeries(this.chartId.getEvent(), new double[][]{x, startX, endX, y, y, y});
+		this.data = dataset;
 	}
 
 	@Override
@@ -101,13 +188,13 @@ public class FixedSliceNumberDistributionChart
 
 		private static final long serialVersionUID = -1582586041169744515L;
 
-		private final HistogramDataset data;
+		private final IntervalXYDataset data;
 
 		private final int serie;
 
 		private final NumberFormat formatter = new DecimalFormat("###.##");
 
-		public HistogramAxis(HistogramDataset data, int serie) {
+		public HistogramAxis(IntervalXYDataset data, int serie) {
 			super();
 			this.data = data;
 			this.serie = serie;
@@ -23,6 +23,9 @@ package org.ow2.clif.jenkins.chart;
 
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
@@ -32,11 +35,10 @@ import org.jfree.chart.axis.NumberAxis;
 import org.jfree.chart.axis.NumberTick;
 import org.jfree.chart.axis.Tick;
 import org.jfree.chart.plot.PlotOrientation;
-import org.jfree.data.statistics.SimpleHistogramBin;
-import org.jfree.data.statistics.SimpleHistogramDataset;
 import org.jfree.data.xy.IntervalXYDataset;
 import org.jfree.ui.RectangleEdge;
 import org.jfree.ui.TextAnchor;
+import org.ow2.clif.jenkins.model.LatencyHistogram;
 import org.ow2.clif.jenkins.parser.clif.Messages;
 
 /**
@@ -48,30 +50,70 @@ import org.ow2.clif.jenkins.parser.clif.Messages;
 public class FixedSliceSizeDistributionChart
 		extends AbstractChart {
 
-	protected final SimpleHistogramDataset data;
+	private final SliceDataset data;
 
 	public FixedSliceSizeDistributionChart(String testplan, String bladeId, String event,
 	                                       ChartConfiguration chartConfiguration) {
 		super("FixedSliceSizeDistribution", bladeId, testplan, event, chartConfiguration);
 
-		this.data = new SimpleHistogramDataset(this.chartId.getEvent());
+		this.data = new SliceDataset(this.chartId.getEvent());
 	}
 
 	public void addData(double[] values, double min, double max) {
 		if (values != null && values.length > 0) {
-			double lower = min;
-			int sliceSize = this.chartConfiguration.getDistributionSliceSize();
-			do {
-				boolean last = (lower + sliceSize >= max);
-				this.data.addBin(new SimpleHistogramBin(lower, lower + sliceSize, true, last));
-				lower += sliceSize;
+			setSlices(min, max);
+			for (double value : values) {
+				this.data.add(value, 1);
 			}
-			while (lower < max);
+		}
+	}
+
+	/**
+	 * Builds the distribution from a histogram: the values of each histogram bucket
+	 * are counted in the slice holding the bucket value.
+	 *
+	 * @param histogram histogram of the values
+	 * @param min       lowest value
+	 * @param max       highest value
+	 */
+	public void addData(LatencyHistogram histogram, double min, double max) {
+		if (histogram.getN() > 0) {
+			setSlices(min, max);
+			for (int bucket = 0; bucket < histogram.getBucketNumber(); bucket++) {
+				long count = histogram.getBucketCount(bucket);
+				if (count > 0) {
+					this.data.add(histogram.getBucketValue(bucket), count);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Slices starting from the lowest value, the last one holding the highest value
+	 */
+	private void setSlices(double min, double max) {
+		int sliceSize = this.chartConfiguration.getDistributionSliceSize();
+		int sliceNumber = (int) Math.max(1, Math.ceil((max - min) / sliceSize));
+		this.data.setSlices(min, sliceSize, sliceNumber);
+	}
 
-			this.data.setAdjustForBinSize(false);
+	@Override
+	protected void writeData(DataOutput out)
+			throws IOException {
+		out.writeDouble(this.data.getStart());
+		out.writeDouble(this.data.getSliceSize());
+		writeLongs(out, this.data.getCounts());
+	}
 
-			this.data.addObservations(values);
+	@Override
+	protected void readData(DataInput in)
+			throws IOException {
+		double start = in.readDouble();
+		double sliceSize = in.readDouble();
+		if (!(sliceSize > 0)) {
+			throw new IOException("Invalid chart data: slice size " + sliceSize);
 		}
+		this.data.setSlices(start, sliceSize, readLongs(in));
 	}
 
 	@Override
@@ -21,6 +21,10 @@
 package org.ow2.clif.jenkins.chart;
 
 import java.awt.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.AxisLocation;
@@ -28,10 +32,10 @@ import org.jfree.chart.axis.NumberAxis;
 import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.chart.plot.XYPlot;
 import org.jfree.chart.renderer.xy.XYLineAndShapeRenderer;
-import org.jfree.data.xy.XYSeries;
-import org.jfree.data.xy.XYSeriesCollection;
+import org.jfree.data.xy.XYDataset;
 import org.jfree.ui.RectangleInsets;
-import org.ow2.clif.jenkins.chart.movingstatistics.*;
+import org.ow2.clif.jenkins.chart.movingstatistics.MovingStatistics;
+import org.ow2.clif.jenkins.model.Measure;
 import org.ow2.clif.jenkins.parser.clif.Messages;
 import static org.ow2.clif.jenkins.parser.clif.Messages.*;
 
@@ -43,27 +47,80 @@ import static org.ow2.clif.jenkins.parser.clif.Messages.*;
 public class MovingStatChart
 		extends AbstractChart {
 
-	protected final XYSeries eventSerie;
+	// colors of the moving percentiles, used in turn when more percentiles are drawn
+	private static final Color[] MOVING_PERCENTILE_COLORS = {Color.CYAN, Color.DARK_GRAY, Color.BLACK, Color.PINK};
+
+	// points, as primitive arrays rather than an XYSeries of boxed values
+	protected double[] dates = new double[16];
+
+	protected double[] values = new double[16];
+
+	protected int size;
 
 	public MovingStatChart(String testplan, String bladeId, String event, ChartConfiguration chartConfiguration) {
 		super("movingStat", bladeId, testplan, event, chartConfiguration);
-		this.eventSerie = new XYSeries(event);
 	}
 
 
 	public void addData(double x, double y) {
-		this.eventSerie.add(x, y);
+		if (size == dates.length) {
+			int capacity = size + (size >> 1) + 1;
+			dates = Arrays.copyOf(dates, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		dates[size] = x;
+		values[size] = y;
+		size++;
+	}
+
+	/**
+	 * Replaces the points of the chart, the arrays being used without copy.
+	 * They are only modified if they are not sorted by date, so that charts may share them.
+	 *
+	 * @param x dates of the points
+	 * @param y values of the points
+	 */
+	public void setData(double[] x, double[] y) {
+		this.dates = x;
+		this.values = y;
+		this.size = x.length;
 	}
 
 	@Override
-	protected JFreeChart createChart() {
-		XYSeriesCollection coreDataset = new XYSeriesCollection();
-		coreDataset.addSeries(this.eventSerie);
+	protected void writeData(DataOutput out)
+			throws IOException {
+		writeDoubles(out, dates, size);
+		writeDoubles(out, values, size);
+	}
+
+	@Override
+	protected void readData(DataInput in)
+			throws IOException {
+		double[] x = readDoubles(in);
+		double[] y = readDoubles(in);
+		if (x.length != y.length) {
+			throw new IOException("Invalid chart data: " + x.length + " dates for " + y.length + " values");
+		}
+		setData(x, y);
+	}
 
+	@Override
+	protected JFreeChart createChart() {
 		long periodMs = this.chartConfiguration.getStatisticalPeriod() * 1000L;
 
-		XYSeriesCollection movingDataset = calculateMovingDataset(coreDataset, periodMs);
-		XYSeriesCollection throughputDataset = calculateThroughputDataset(coreDataset, periodMs);
+		MovingStatistics.sortByX(dates, values, size);
+		MovingStatistics statistics = new MovingStatistics(periodMs, 0);
+		double[] percentileRanks = getMovingPercentileRanks();
+		statistics.setPercentiles(percentileRanks);
+		statistics.calculate(dates, values, size);
+
+		// statistics are ordered by descending x, and datasets by ascending x
+		double[] x = new double[statistics.size()];
+		for (int i = 0; i < x.length; i++) {
+			x[i] = statistics.getX(x.length - 1 - i);
+		}
+		XYDataset movingDataset = calculateMovingDataset(statistics, x, percentileRanks);
+		XYDataset throughputDataset = calculateThroughputDataset(statistics, x);
 
 		JFreeChart chart;
 		chart = ChartFactory.createXYLineChart(
@@ -96,7 +153,7 @@ public class MovingStatChart
 		attachThroughputDatasetToDedicatedAxis(throughputDataset, plot);
 
 		// Global renderer for moving stats
-		plot.setRenderer(getGlobalRenderer());
+		plot.setRenderer(getGlobalRenderer(percentileRanks.length));
 
 		// Dedicated Throughput renderer
 		plot.setRenderer(1, getThroughputRenderer());
@@ -104,34 +161,57 @@ public class MovingStatChart
 		return chart;
 	}
 
-	private XYSeriesCollection calculateThroughputDataset(XYSeriesCollection coreDataset, long periodMs) {
-		MovingThroughputStat throughputStat = new MovingThroughputStat(periodMs);
-		XYSeries throughputSeries =
-				throughputStat.calculateMovingStat(coreDataset, 0, MovingChart_MovingThroughput(), periodMs, 0);
-		XYSeriesCollection throughputDataset = new XYSeriesCollection();
-		throughputDataset.addSeries(throughputSeries);
+	private XYDataset calculateThroughputDataset(MovingStatistics statistics, double[] x) {
+		int n = x.length;
+		double[] throughput = new double[n];
+		for (int i = 0; i < n; i++) {
+			throughput[i] = statistics.getThroughput(n - 1 - i);
+		}
+		ArrayXYDataset throughputDataset = new ArrayXYDataset();
+		throughputDataset.addSeries(MovingChart_MovingThroughput(), x, throughput, n);
 		return throughputDataset;
 	}
 
-	private XYSeriesCollection calculateMovingDataset(XYSeriesCollection coreDataset, long periodMs) {
-		MovingAverageStat averageStat = new MovingAverageStat();
-		XYSeries movingSeries =
-				averageStat.calculateMovingStat(coreDataset, 0, MovingChart_MovingAverage(), periodMs, 0);
-		MovingMaxStat maxStat = new MovingMaxStat();
-		XYSeries maxSeries = maxStat.calculateMovingStat(coreDataset, 0, MovingChart_MovingMax(), periodMs, 0);
-		MovingMinStat minStat = new MovingMinStat();
-		XYSeries minSeries = minStat.calculateMovingStat(coreDataset, 0, MovingChart_MovingMin(), periodMs, 0);
-		MovingMedianStat medianStat = new MovingMedianStat();
-		XYSeries medianSeries = medianStat.calculateMovingStat(coreDataset, 0, MovingChart_MovingMedian(), periodMs, 0);
-		MovingStdDevStat stdDevStat = new MovingStdDevStat();
-		XYSeries stdDevSeries = stdDevStat.calculateMovingStat(coreDataset, 0, MovingChart_MovingStdDev(), periodMs, 0);
-
-		XYSeriesCollection movingDataset = new XYSeriesCollection();
-		movingDataset.addSeries(movingSeries);
-		movingDataset.addSeries(maxSeries);
-		movingDataset.addSeries(minSeries);
-		movingDataset.addSeries(medianSeries);
-		movingDataset.addSeries(stdDevSeries);
+	/**
+	 * @return percentiles drawn on the chart, none if moving percentiles are disabled
+	 */
+	private double[] getMovingPercentileRanks() {
+		if (this.chartConfiguration.isMovingPercentiles()) {
+			return this.chartConfiguration.getMovingPercentileRanks();
+		}
+		return new double[0];
+	}
+
+	private XYDataset calculateMovingDataset(MovingStatistics statistics, double[] x, double[] percentileRanks) {
+		int n = x.length;
+		double[] average = new double[n];
+		double[] max = new double[n];
+		double[] min = new double[n];
+		double[] median = new double[n];
+		double[] stdDev = new double[n];
+		int percentileNumber = percentileRanks.length;
+		double[][] percentiles = new double[percentileNumber][n];
+		for (int i = 0; i < n; i++) {
+			int index = n - 1 - i;
+			average[i] = statistics.getAverage(index);
+			max[i] = statistics.getMax(index);
+			min[i] = statistics.getMin(index);
+			median[i] = statistics.getMedian(index);
+			stdDev[i] = statistics.getStandardDeviation(index);
+			for (int p = 0; p < percentileNumber; p++) {
+				percentiles[p][i] = statistics.getPercentile(p, index);
+			}
+		}
+
+		ArrayXYDataset movingDataset = new ArrayXYDataset();
+		movingDataset.addSeries(MovingChart_MovingAverage(), x, average, n);
+		movingDataset.addSeries(MovingChart_MovingMax(), x, max, n);
+		movingDataset.addSeries(MovingChart_MovingMin(), x, min, n);
+		movingDataset.addSeries(MovingChart_MovingMedian(), x, median, n);
+		movingDataset.addSeries(MovingChart_MovingStdDev(), x, stdDev, n);
+		for (int p = 0; p < percentileNumber; p++) {
+			movingDataset.addSeries(MovingChart_MovingPercentile(Measure.getPercentileLabel(percentileRanks[p])), x, percentiles[p], n);
+		}
 		return movingDataset;
 	}
 
@@ -142,7 +222,7 @@ public class MovingStatChart
 		plot.setRangeGridlinePaint(Color.white);
 	}
 
-	private void attachThroughputDatasetToDedicatedAxis(XYSeriesCollection throughputDataset, XYPlot plot) {
+	private void attachThroughputDatasetToDedicatedAxis(XYDataset throughputDataset, XYPlot plot) {
 		NumberAxis throughputAxis = new NumberAxis(Messages.MovingChart_Throughput());
 		plot.setRangeAxis(1, throughputAxis);
 		plot.setRangeAxisLocation(1, AxisLocation.BOTTOM_OR_RIGHT);
@@ -159,7 +239,7 @@ public class MovingStatChart
 		return rendererThroughput;
 	}
 
-	private XYLineAndShapeRenderer getGlobalRenderer() {
+	private XYLineAndShapeRenderer getGlobalRenderer(int percentileNumber) {
 		final XYLineAndShapeRenderer renderer = new XYLineAndShapeRenderer();
 		renderer.setSeriesShapesVisible(0, false);
 		renderer.setSeriesPaint(0, Color.BLUE);
@@ -176,6 +256,11 @@ public class MovingStatChart
 		renderer.setSeriesShapesVisible(4, false);
 		renderer.setSeriesPaint(4, Color.ORANGE);
 		renderer.setSeriesStroke(4, new BasicStroke(1));
+		for (int p = 0; p < percentileNumber; p++) {
+			renderer.setSeriesShapesVisible(5 + p, false);
+			renderer.setSeriesPaint(5 + p, MOVING_PERCENTILE_COLORS[p % MOVING_PERCENTILE_COLORS.length]);
+			renderer.setSeriesStroke(5 + p, new BasicStroke(1));
+		}
 		return renderer;
 	}
 
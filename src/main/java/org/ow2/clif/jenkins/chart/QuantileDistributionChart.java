@@ -20,11 +20,15 @@
  */
 package org.ow2.clif.jenkins.chart;
 
-import org.apache.commons.math.stat.descriptive.DescriptiveStatistics;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.data.category.DefaultCategoryDataset;
+import org.ow2.clif.jenkins.model.LatencyHistogram;
+import org.ow2.clif.jenkins.model.SortedValues;
 import org.ow2.clif.jenkins.parser.clif.Messages;
 
 /**
@@ -52,11 +56,50 @@ public class QuantileDistributionChart
 		this.data = new DefaultCategoryDataset();
 	}
 
-	public void addData(DescriptiveStatistics stat)
+	public void addData(double[] values)
+	{
+		addData(new SortedValues(values.clone()));
+	}
+
+	public void addData(SortedValues values)
 	{
 		for (int i = 5; i <= 100; i += 5)
 		{
-			this.data.addValue(stat.getPercentile(i), this.chartId.getEvent(), "" + i);
+			this.data.addValue(values.getPercentile(i), this.chartId.getEvent(), "" + i);
+		}
+	}
+
+	public void addData(LatencyHistogram histogram)
+	{
+		for (int i = 5; i <= 100; i += 5)
+		{
+			this.data.addValue(histogram.getPercentile(i), this.chartId.getEvent(), "" + i);
+		}
+	}
+
+	@Override
+	protected void writeData(DataOutput out)
+			throws IOException
+	{
+		int columnCount = this.data.getRowCount() == 0 ? 0 : this.data.getColumnCount();
+		out.writeInt(columnCount);
+		for (int i = 0; i < columnCount; i++)
+		{
+			out.writeUTF(this.data.getColumnKey(i).toString());
+			out.writeDouble(this.data.getValue(0, i).doubleValue());
+		}
+	}
+
+	@Override
+	protected void readData(DataInput in)
+			throws IOException
+	{
+		this.data.clear();
+		int columnCount = readSize(in);
+		for (int i = 0; i < columnCount; i++)
+		{
+			String percentage = in.readUTF();
+			this.data.addValue(in.readDouble(), this.chartId.getEvent(), percentage);
 		}
 	}
 
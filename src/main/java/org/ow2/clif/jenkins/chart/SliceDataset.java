@@ -0,0 +1,158 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.chart;
+
+import org.jfree.data.xy.AbstractIntervalXYDataset;
+
+/**
+ * Histogram dataset of a single series, whose slices have the same size.<br>
+ * Unlike a SimpleHistogramDataset, which looks for the bin of each value among all its bins,
+ * the slice of a value is computed from the value, so that counting n values costs O(n)
+ * whatever the number of slices. Each slice includes its lower bound, and the last slice
+ * also includes its upper bound. Item x values are the slice centers.
+ *
+ * @author Bruno Dillenseger
+ */
+class SliceDataset
+		extends AbstractIntervalXYDataset {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Comparable key;
+
+	private double start;
+
+	private double sliceSize = 1;
+
+	private long[] counts = new long[0];
+
+	SliceDataset(Comparable key) {
+		this.key = key;
+	}
+
+	/**
+	 * Replaces the slices by empty slices.
+	 *
+	 * @param start       lower bound of the first slice
+	 * @param sliceSize   size of each slice
+	 * @param sliceNumber number of slices
+	 */
+	public void setSlices(double start, double sliceSize, int sliceNumber) {
+		this.start = start;
+		this.sliceSize = sliceSize;
+		this.counts = new long[sliceNumber];
+	}
+
+	/**
+	 * Replaces the slices by slices holding the given counts.
+	 *
+	 * @param start     lower bound of the first slice
+	 * @param sliceSize size of each slice
+	 * @param counts    number of values of each slice
+	 */
+	void setSlices(double start, double sliceSize, long[] counts) {
+		this.start = start;
+		this.sliceSize = sliceSize;
+		this.counts = counts.clone();
+	}
+
+	double getStart() {
+		return start;
+	}
+
+	double getSliceSize() {
+		return sliceSize;
+	}
+
+	long[] getCounts() {
+		return counts.clone();
+	}
+
+	/**
+	 * Counts a value in its slice, values out of the slices being counted in the first or last slice.
+	 *
+	 * @param value value to count
+	 * @param count number of times the value is counted
+	 */
+	public void add(double value, long count) {
+		int slice = (int) Math.min(counts.length - 1, Math.max(0, Math.floor((value - start) / sliceSize)));
+		counts[slice] += count;
+	}
+
+	@Override
+	public int getSeriesCount() {
+		return 1;
+	}
+
+	@Override
+	public Comparable getSeriesKey(int series) {
+		return key;
+	}
+
+	public int getItemCount(int series) {
+		return counts.length;
+	}
+
+	public Number getX(int series, int item) {
+		return getXValue(series, item);
+	}
+
+	@Override
+	public double getXValue(int series, int item) {
+		return (getStartXValue(series, item) + getEndXValue(series, item)) / 2.0;
+	}
+
+	public Number getY(int series, int item) {
+		return getYValue(series, item);
+	}
+
+	@Override
+	public double getYValue(int series, int item) {
+		return counts[item];
+	}
+
+	public Number getStartX(int series, int item) {
+		return getStartXValue(series, item);
+	}
+
+	@Override
+	public double getStartXValue(int series, int item) {
+		return start + item * sliceSize;
+	}
+
+	public Number getEndX(int series, int item) {
+		return getEndXValue(series, item);
+	}
+
+	@Override
+	public double getEndXValue(int series, int item) {
+		return start + (item + 1) * sliceSize;
+	}
+
+	public Number getStartY(int series, int item) {
+		return getY(series, item);
+	}
+
+	public Number getEndY(int series, int item) {
+		return getY(series, item);
+	}
+}
@@ -0,0 +1,287 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.chart.movingstatistics;
+
+import org.apache.commons.math.stat.descriptive.moment.StandardDeviation;
+
+/**
+ * Calculates all the moving statistics of time series data in a single pass:
+ * average, max, min, median, standard deviation and throughput.
+ * Periods are laid out backwards from the last point, and the statistics of each
+ * period are given at the middle of the period. Points are read from primitive
+ * arrays and visited once for all statistics.
+ */
+public class MovingStatistics {
+
+	private final double period;
+
+	private final double skip;
+
+	private final StandardDeviation stdDev = new StandardDeviation();
+
+	private final WindowValues values = new WindowValues();
+
+	// Results, one per statistical period, by descending x
+	private int size;
+
+	private double[] x = new double[16];
+
+	private double[] average = new double[16];
+
+	private double[] max = new double[16];
+
+	private double[] min = new double[16];
+
+	private double[] median = new double[16];
+
+	private double[] standardDeviation = new double[16];
+
+	private double[] throughput = new double[16];
+
+	private double[] percentiles = new double[0];
+
+	// percentileValues[p][i]: value of the p-th percentile in period i
+	private double[][] percentileValues = new double[0][];
+
+	/**
+	 * @param period the period, in milliseconds
+	 * @param skip   the length of the initial skip period
+	 */
+	public MovingStatistics(double period, double skip) {
+		if (period <= 0.0) {
+			throw new IllegalArgumentException("statisticalPeriod must be positive.");
+		}
+		if (skip < 0.0) {
+			throw new IllegalArgumentException("skip must be >= 0.0.");
+		}
+		this.period = period;
+		this.skip = skip;
+	}
+
+	/**
+	 * Sets the moving percentiles to calculate in addition to the median.
+	 * A percentile is the smallest value of the period such that at least
+	 * the given percentage of the values are lower or equal (nearest rank),
+	 * which is consistent with the lower median.
+	 *
+	 * @param percentiles percentiles, greater than 0 and up to 100
+	 */
+	public void setPercentiles(double... percentiles) {
+		for (double p : percentiles) {
+			if (!(p > 0 && p <= 100)) {
+				throw new IllegalArgumentException("invalid percentile value: " + p);
+			}
+		}
+		this.percentiles = percentiles.clone();
+		this.percentileValues = new double[percentiles.length][x.length];
+	}
+
+	/**
+	 * Calculates the moving statistics of the given points, replacing the previous results.
+	 *
+	 * @param xValues x values of the points, in ascending order
+	 * @param yValues y values of the points
+	 * @param count   number of points
+	 */
+	public void calculate(double[] xValues, double[] yValues, int count) {
+		size = 0;
+		if (count == 0) {
+			return;
+		}
+		double first = xValues[0] + skip;
+		double lastXEndPeriod = xValues[count - 1];
+		int windowEnd = count - 1;
+		while (windowEnd >= 0) {
+			double windowX = xValues[windowEnd];
+			while (lastXEndPeriod >= windowX + period) {
+				lastXEndPeriod -= period;
+			}
+			if (windowX < first) {
+				windowEnd--;
+				continue;
+			}
+			double limit = windowX - period;
+			double sum = 0.0;
+			double windowMax = yValues[windowEnd];
+			double windowMin = yValues[windowEnd];
+			values.clear();
+			int windowStart = windowEnd;
+			do {
+				double y = yValues[windowStart];
+				sum = sum + y;
+				windowMax = Math.max(windowMax, y);
+				windowMin = Math.min(windowMin, y);
+				values.add(y);
+				windowStart--;
+			}
+			while (windowStart >= 0 && xValues[windowStart] > limit);
+			int n = values.size();
+
+			if (size == x.length) {
+				grow();
+			}
+			x[size] = lastXEndPeriod - (period / 2);
+			average[size] = sum / n;
+			max[size] = windowMax;
+			min[size] = windowMin;
+			standardDeviation[size] = stdDev.evaluate(values.getValues(), 0, n);
+			// lower median for an even number of values, selection reorders the values
+			median[size] = values.select((n - 1) / 2);
+			for (int p = 0; p < percentiles.length; p++) {
+				// rank of the value, rounded up
+				int rank = (int) Math.ceil(percentiles[p] * n / 100) - 1;
+				percentileValues[p][size] = values.select(rank);
+			}
+			throughput[size] = (n * 1000D) / period;
+			size++;
+			windowEnd = windowStart;
+		}
+	}
+
+	/**
+	 * @return number of statistical periods, i.e. of values of each moving statistic
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param index index of a statistical period, periods being ordered by descending x
+	 * @return x value of the middle of the period
+	 */
+	public double getX(int index) {
+		return x[index];
+	}
+
+	public double getAverage(int index) {
+		return average[index];
+	}
+
+	public double getMax(int index) {
+		return max[index];
+	}
+
+	public double getMin(int index) {
+		return min[index];
+	}
+
+	public double getMedian(int index) {
+		return median[index];
+	}
+
+	public double getStandardDeviation(int index) {
+		return standardDeviation[index];
+	}
+
+	/**
+	 * @param percentile index of the percentile, in the order given to {@link #setPercentiles(double...)}
+	 * @param index      index of a statistical period
+	 * @return value of the percentile in the period
+	 */
+	public double getPercentile(int percentile, int index) {
+		return percentileValues[percentile][index];
+	}
+
+	/**
+	 * @param index index of a statistical period
+	 * @return number of points of the period per second, x values being milliseconds
+	 */
+	public double getThroughput(int index) {
+		return throughput[index];
+	}
+
+	/**
+	 * Sorts points by ascending x. The sort is stable, so that points with the same x
+	 * keep their order, as when they are added to an {@link org.jfree.data.xy.XYSeries}.
+	 *
+	 * @param xValues x values of the points
+	 * @param yValues y values of the points, reordered as the x values
+	 * @param count   number of points
+	 */
+	public static void sortByX(double[] xValues, double[] yValues, int count) {
+		int i = 1;
+		while (i < count && xValues[i - 1] <= xValues[i]) {
+			i++;
+		}
+		if (i < count) {
+			mergeSort(xValues.clone(), yValues.clone(), xValues, yValues, 0, count);
+		}
+	}
+
+	/**
+	 * Sorts the range of the destination arrays, the source arrays holding the same values
+	 * (merge sort alternating between the arrays, as {@link java.util.Arrays} does for objects).
+	 */
+	private static void mergeSort(double[] srcX, double[] srcY, double[] destX, double[] destY, int low, int high) {
+		int length = high - low;
+		if (length < 7) {
+			// insertion sort on smallest ranges
+			for (int i = low; i < high; i++) {
+				for (int j = i; j > low && destX[j - 1] > destX[j]; j--) {
+					swap(destX, j, j - 1);
+					swap(destY, j, j - 1);
+				}
+			}
+			return;
+		}
+		int mid = (low + high) >>> 1;
+		mergeSort(destX, destY, srcX, srcY, low, mid);
+		mergeSort(destX, destY, srcX, srcY, mid, high);
+
+		// merge the sorted halves of the source arrays into the destination arrays
+		for (int i = low, p = low, q = mid; i < high; i++) {
+			if (q >= high || p < mid && srcX[p] <= srcX[q]) {
+				destX[i] = srcX[p];
+				destY[i] = srcY[p++];
+			}
+			else {
+				destX[i] = srcX[q];
+				destY[i] = srcY[q++];
+			}
+		}
+	}
+
+	private static void swap(double[] array, int a, int b) {
+		double t = array[a];
+		array[a] = array[b];
+		array[b] = t;
+	}
+
+	private void grow() {
+		int capacity = size * 2;
+		x = copy(x, capacity);
+		average = copy(average, capacity);
+		max = copy(max, capacity);
+		min = copy(min, capacity);
+		median = copy(median, capacity);
+		standardDeviation = copy(standardDeviation, capacity);
+		throughput = copy(throughput, capacity);
+		for (int p = 0; p < percentileValues.length; p++) {
+			percentileValues[p] = copy(percentileValues[p], capacity);
+		}
+	}
+
+	private static double[] copy(double[] array, int length) {
+		double[] res = new double[length];
+		System.arraycopy(array, 0, res, 0, Math.min(length, array.length));
+		return res;
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.chart.movingstatistics;
+
+/**
+ * Reusable buffer of the values of a statistical period, so that computing
+ * a moving statistic does not allocate memory for each period.
+ */
+class WindowValues {
+
+	private double[] values = new double[16];
+
+	private int size;
+
+	void clear() {
+		size = 0;
+	}
+
+	void add(double value) {
+		if (size == values.length) {
+			double[] newValues = new double[size * 2];
+			System.arraycopy(values, 0, newValues, 0, size);
+			values = newValues;
+		}
+		values[size++] = value;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return the buffer, holding the values from index 0 to {@link #size()} excluded
+	 */
+	double[] getValues() {
+		return values;
+	}
+
+	/**
+	 * Returns the k-th smallest value, in linear time on average
+	 * (quickselect). The values are reordered.
+	 *
+	 * @param k rank of the value, from 0 to {@link #size()} excluded
+	 * @return the value that would be at index k if the values were sorted
+	 */
+	double select(int k) {
+		int left = 0;
+		int right = size - 1;
+		while (left < right) {
+			double pivot = median(values[left], values[(left + right) >>> 1], values[right]);
+			// three-way partition, so that many equal values (such as integer
+			// response times) don't make it quadratic: < pivot, == pivot, > pivot
+			int lower = left;
+			int upper = right;
+			int i = left;
+			while (i <= upper) {
+				if (values[i] < pivot) {
+					swap(i++, lower++);
+				}
+				else if (values[i] > pivot) {
+					swap(i, upper--);
+				}
+				else {
+					i++;
+				}
+			}
+			if (k < lower) {
+				right = lower - 1;
+			}
+			else if (k > upper) {
+				left = upper + 1;
+			}
+			else {
+				return pivot;
+			}
+		}
+		return values[k];
+	}
+
+	private static double median(double a, double b, double c) {
+		return a < b ? (b < c ? b : a < c ? c : a) : (b > c ? b : a > c ? c : a);
+	}
+
+	private void swap(int a, int b) {
+		double t = values[a];
+		values[a] = values[b];
+		values[b] = t;
+	}
+}
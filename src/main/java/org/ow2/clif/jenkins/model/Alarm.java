@@ -20,12 +20,18 @@
  */
 package org.ow2.clif.jenkins.model;
 
+import java.io.Serializable;
+
 /**
  * Alarm that Clif generates during a test
  *
  * @author Julien Coste
  */
-public class Alarm {
+public class Alarm
+		implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
 	protected long date;
 	protected Severity severity;
 	protected String message;
@@ -20,13 +20,17 @@
  */
 package org.ow2.clif.jenkins.model;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * @author Julien Coste
  */
-public abstract class Blade {
+public abstract class Blade
+		implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private String id;
 	private String name;
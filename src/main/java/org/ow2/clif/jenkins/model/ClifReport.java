@@ -20,10 +20,14 @@
  */
 package org.ow2.clif.jenkins.model;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
-public class ClifReport {
+public class ClifReport
+		implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private List<TestPlan> testplans;
 
@@ -25,6 +25,8 @@ package org.ow2.clif.jenkins.model;
  */
 public class Injector extends Blade {
 
+	private static final long serialVersionUID = 1L;
+
 	public Injector() {
 		super();
 	}
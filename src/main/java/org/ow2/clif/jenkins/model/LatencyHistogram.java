@@ -0,0 +1,233 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.model;
+
+import java.io.Serializable;
+
+/**
+ * Mergeable histogram of response times, holding a bounded number of buckets
+ * whatever the number of recorded values.<br>
+ * Values are rounded to the nearest integer (response times are milliseconds).
+ * Values lower than {@value #LINEAR_BUCKETS} get a bucket of their own, and are thus exact.
+ * Above, each power of two range is split into {@value #SUB_BUCKETS} buckets of the same width,
+ * so that the relative error of a percentile is less than 1/{@value #SUB_BUCKETS} (about 1.6%).
+ * Count, mean, standard deviation, min and max are computed exactly, on the fly.
+ *
+ * @author Bruno Dillenseger
+ */
+public class LatencyHistogram
+		implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final int LINEAR_BUCKETS = 128;
+
+	public static final int SUB_BUCKETS = 64;
+
+	// log2 of LINEAR_BUCKETS and SUB_BUCKETS
+	private static final int LINEAR_BITS = 7;
+
+	private static final int SUB_BITS = 6;
+
+	private long[] counts = new long[LINEAR_BUCKETS];
+
+	private long n;
+
+	private double mean;
+
+	// sum of the squared deviations from the mean
+	private double m2;
+
+	private double min = Double.NaN;
+
+	private double max = Double.NaN;
+
+	public void add(double value) {
+		int bucket = getBucket(value);
+		if (bucket >= counts.length) {
+			grow(bucket + 1);
+		}
+		counts[bucket]++;
+
+		n++;
+		double delta = value - mean;
+		mean += delta / n;
+		m2 += delta * (value - mean);
+		if (n == 1) {
+			min = value;
+			max = value;
+		}
+		else {
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+	}
+
+	/**
+	 * Adds the values recorded by another histogram to this one.
+	 *
+	 * @param histogram histogram to merge into this one
+	 */
+	public void merge(LatencyHistogram histogram) {
+		if (histogram.n == 0) {
+			return;
+		}
+		if (histogram.counts.length > counts.length) {
+			grow(histogram.counts.length);
+		}
+		for (int i = 0; i < histogram.counts.length; i++) {
+			counts[i] += histogram.counts[i];
+		}
+
+		long total = n + histogram.n;
+		double delta = histogram.mean - mean;
+		mean += delta * histogram.n / total;
+		m2 += histogram.m2 + delta * delta * n * histogram.n / total;
+		if (n == 0) {
+			min = histogram.min;
+			max = histogram.max;
+		}
+		else {
+			min = Math.min(min, histogram.min);
+			max = Math.max(max, histogram.max);
+		}
+		n = total;
+	}
+
+	public long getN() {
+		return n;
+	}
+
+	public double getMean() {
+		return n == 0 ? Double.NaN : mean;
+	}
+
+	/**
+	 * @return the bias corrected standard deviation, 0 for a single value
+	 */
+	public double getStandardDeviation() {
+		if (n == 0) {
+			return Double.NaN;
+		}
+		if (n == 1) {
+			return 0;
+		}
+		return Math.sqrt(m2 / (n - 1.0));
+	}
+
+	public double getMin() {
+		return min;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * Estimates a percentile with the same definition as the commons-math
+	 * Percentile class, the recorded values being replaced by the value of their bucket.
+	 *
+	 * @param p percentile, in ]0, 100]
+	 * @return the estimated percentile, NaN if no value has been recorded
+	 */
+	public double getPercentile(double p) {
+		if (p <= 0 || p > 100) {
+			throw new IllegalArgumentException("invalid quantile value: " + p);
+		}
+		if (n == 0) {
+			return Double.NaN;
+		}
+		if (n == 1) {
+			return min;
+		}
+		double pos = p * (n + 1) / 100;
+		if (pos < 1) {
+			return min;
+		}
+		if (pos >= n) {
+			return max;
+		}
+		long rank = (long) Math.floor(pos);
+		double dif = pos - rank;
+
+		// values of ranks rank and rank + 1 (starting from 1)
+		long cumulated = 0;
+		int bucket = 0;
+		while (cumulated + counts[bucket] < rank) {
+			cumulated += counts[bucket++];
+		}
+		double lower = getBucketValue(bucket);
+		while (cumulated + counts[bucket] < rank + 1) {
+			cumulated += counts[bucket++];
+		}
+		double upper = getBucketValue(bucket);
+		return lower + dif * (upper - lower);
+	}
+
+	/**
+	 * @return number of buckets, some of them possibly empty
+	 */
+	public int getBucketNumber() {
+		return counts.length;
+	}
+
+	/**
+	 * @param bucket bucket index, lower than {@link #getBucketNumber()}
+	 * @return number of values recorded in the bucket
+	 */
+	public long getBucketCount(int bucket) {
+		return counts[bucket];
+	}
+
+	/**
+	 * @param bucket bucket index, lower than {@link #getBucketNumber()}
+	 * @return value standing for the values of the bucket, between min and max
+	 */
+	public double getBucketValue(int bucket) {
+		double value;
+		if (bucket < LINEAR_BUCKETS) {
+			value = bucket;
+		}
+		else {
+			int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + LINEAR_BITS - SUB_BITS;
+			long lowerBound = (long) (SUB_BUCKETS + (bucket - LINEAR_BUCKETS) % SUB_BUCKETS) << shift;
+			value = lowerBound + ((1L << shift) - 1) / 2.0;
+		}
+		return Math.max(min, Math.min(max, value));
+	}
+
+	private static int getBucket(double value) {
+		long rounded = Math.max(0, Math.round(value));
+		if (rounded < LINEAR_BUCKETS) {
+			return (int) rounded;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(rounded);
+		int shift = exponent - SUB_BITS;
+		return LINEAR_BUCKETS + (exponent - LINEAR_BITS) * SUB_BUCKETS + (int) (rounded >> shift) - SUB_BUCKETS;
+	}
+
+	private void grow(int minLength) {
+		long[] newCounts = new long[Math.max(minLength, counts.length + SUB_BUCKETS)];
+		System.arraycopy(counts, 0, newCounts, 0, counts.length);
+		counts = newCounts;
+	}
+}
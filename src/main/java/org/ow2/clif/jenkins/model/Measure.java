@@ -21,6 +21,7 @@
  */
 package org.ow2.clif.jenkins.model;
 
+import java.io.Serializable;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 
@@ -30,7 +31,10 @@ import java.text.NumberFormat;
  * @author Julien Coste
  * @author Bruno Dillenseger
  */
-public class Measure {
+public class Measure
+		implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private transient NumberFormat percentFormat;
 	private transient NumberFormat dataFormat;
@@ -46,6 +50,13 @@ public class Measure {
 	private double throughput;
 	private String name;
 
+	// true if the statistics have been computed in sketch mode
+	private boolean sketch;
+
+	// percentiles computed for this measure, and their values
+	private double[] percentileRanks;
+	private long[] percentileValues;
+
 	public Measure() {
 		percentFormat = new DecimalFormat("#.##%");
 		doubleFormat = new DecimalFormat("#.##");
@@ -186,4 +197,69 @@ public class Measure {
 	public void setThroughput(double throughput) {
 		this.throughput = throughput;
 	}
+
+	/**
+	 * @return true if the median is estimated from a histogram,
+	 * in which case no chart over time is available for this measure
+	 */
+	public boolean isSketch() {
+		return sketch;
+	}
+
+	public void setSketch(boolean sketch) {
+		this.sketch = sketch;
+	}
+
+	/**
+	 * @return the computed percentiles, in ]0, 100[, empty if none
+	 */
+	public double[] getPercentileRanks() {
+		return percentileRanks == null ? new double[0] : percentileRanks.clone();
+	}
+
+	/**
+	 * @return the values of the computed percentiles, in the order of {@link #getPercentileRanks()}
+	 */
+	public long[] getPercentileValues() {
+		return percentileValues == null ? new long[0] : percentileValues.clone();
+	}
+
+	/**
+	 * @return the computed percentiles, as labels of table columns and graph series
+	 */
+	public String[] getPercentileLabels() {
+		double[] ranks = getPercentileRanks();
+		String[] labels = new String[ranks.length];
+		for (int i = 0; i < ranks.length; i++) {
+			labels[i] = getPercentileLabel(ranks[i]);
+		}
+		return labels;
+	}
+
+	/**
+	 * @param rank percentile
+	 * @return the value of the percentile, -1 if it has not been computed
+	 */
+	public long getPercentile(double rank) {
+		if (percentileRanks != null) {
+			for (int i = 0; i < percentileRanks.length; i++) {
+				if (percentileRanks[i] == rank) {
+					return percentileValues[i];
+				}
+			}
+		}
+		return -1;
+	}
+
+	public void setPercentiles(double[] ranks, long[] values) {
+		if (ranks.length != values.length) {
+			throw new IllegalArgumentException("percentile ranks and values should have the same length");
+		}
+		this.percentileRanks = ranks.clone();
+		this.percentileValues = values.clone();
+	}
+
+	public static String getPercentileLabel(double rank) {
+		return new DecimalFormat("#.###").format(rank);
+	}
 }
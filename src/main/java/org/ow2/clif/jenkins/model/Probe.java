@@ -24,6 +24,9 @@ package org.ow2.clif.jenkins.model;
  * @author Julien Coste
  */
 public class Probe extends Blade {
+
+	private static final long serialVersionUID = 1L;
+
 	public Probe() {
 		super();
 	}
@@ -0,0 +1,85 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.model;
+
+import java.util.Arrays;
+
+/**
+ * Values sorted once, from which any number of percentiles are read
+ * without copying nor sorting the values again.<br>
+ * Percentiles have the same definition as the commons-math Percentile class,
+ * which copies and sorts the values for each percentile.
+ *
+ * @author Bruno Dillenseger
+ */
+public class SortedValues {
+
+	private final double[] values;
+
+	/**
+	 * @param values values to sort, sorted in place and then held without copy
+	 */
+	public SortedValues(double[] values) {
+		Arrays.sort(values);
+		this.values = values;
+	}
+
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * @return the values in ascending order, not to be modified
+	 */
+	public double[] getValues() {
+		return values;
+	}
+
+	/**
+	 * @param p percentile, in ]0, 100]
+	 * @return the percentile, NaN if there is no value
+	 */
+	public double getPercentile(double p) {
+		if (p <= 0 || p > 100) {
+			throw new IllegalArgumentException("invalid quantile value: " + p);
+		}
+		int n = values.length;
+		if (n == 0) {
+			return Double.NaN;
+		}
+		if (n == 1) {
+			return values[0];
+		}
+		double pos = p * (n + 1) / 100;
+		if (pos < 1) {
+			return values[0];
+		}
+		if (pos >= n) {
+			return values[n - 1];
+		}
+		int rank = (int) Math.floor(pos);
+		double dif = pos - rank;
+		double lower = values[rank - 1];
+		double upper = values[rank];
+		return lower + dif * (upper - lower);
+	}
+}
@@ -21,6 +21,7 @@
  */
 package org.ow2.clif.jenkins.model;
 
+import java.io.Serializable;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -33,13 +34,18 @@ import java.util.ArrayList;
 import javax.annotation.Nonnull;
 import hudson.Util;
 
-public class TestPlan {
+public class TestPlan
+		implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private String name;
 	private Date date;
 	private List<Probe> probes;
 	private List<Injector> injectors;
 	private List<Measure> aggregatedMeasures;
+	// histograms of the aggregated measures, by measure name
+	private Map<String, LatencyHistogram> aggregatedHistograms;
 
 	private transient boolean initDone = false;
 	private transient Map<String, List<Probe>> probesByServer;
@@ -141,6 +147,36 @@ public class TestPlan {
 		aggregatedMeasures.add(measure);
 	}
 
+	/**
+	 * @return the percentiles computed for the injector measures, as labels of table columns
+	 */
+	public String[] getPercentileLabels() {
+		if (aggregatedMeasures == null || aggregatedMeasures.isEmpty()) {
+			return new String[0];
+		}
+		// all the measures of an analysis have the same percentiles
+		return aggregatedMeasures.get(0).getPercentileLabels();
+	}
+
+	public Map<String, LatencyHistogram> getAggregatedHistograms() {
+		return aggregatedHistograms;
+	}
+
+	/**
+	 * @param measureName name of an aggregated measure
+	 * @return the histogram of the response times of the measure, null if not available
+	 */
+	public LatencyHistogram getAggregatedHistogram(String measureName) {
+		return aggregatedHistograms == null ? null : aggregatedHistograms.get(measureName);
+	}
+
+	public void addAggregatedHistogram(String measureName, LatencyHistogram histogram) {
+		if (aggregatedHistograms == null) {
+			aggregatedHistograms = new HashMap<String, LatencyHistogram>();
+		}
+		aggregatedHistograms.put(measureName, histogram);
+	}
+
 	public Set<String> getServers() {
 		Set<String> servers = new HashSet<String>();
 		probesByServer = new HashMap<String, List<Probe>>();
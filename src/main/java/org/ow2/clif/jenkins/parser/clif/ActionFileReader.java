@@ -0,0 +1,386 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.parser.clif;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Reader of the action events file of a blade in a CLIF file storage.<br>
+ * Each line of this file holds the fields of an action event, separated by commas:
+ * <pre>date, session id, action type, iteration, success, duration, comment, result</pre>
+ * The file is read by regions into a reused buffer, and read like a cursor: {@link #next()}
+ * moves to the next event, whose numeric fields are parsed directly from the buffered bytes.
+ * The file is not memory-mapped, so that it is released as soon as the reader is closed
+ * (a mapped file stays locked on Windows until the mapping is garbage collected).
+ * Text fields are only decoded when requested, and the decoded values are shared
+ * between events, so that reading an event does not allocate any object.
+ *
+ * @author Bruno Dillenseger
+ */
+public class ActionFileReader
+		implements Closeable {
+
+	/**
+	 * Labels of the action event fields, in the order of the file columns
+	 */
+	public static final String[] FIELD_LABELS =
+			{"date", "session id", "action type", "iteration", "success", "duration", "comment", "result"};
+
+	private static final int DEFAULT_REGION_SIZE = 1024 * 1024;
+
+	private static final int MAX_SHARED_VALUES = 4096;
+
+	private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+
+	private final RandomAccessFile file;
+
+	private final FileChannel channel;
+
+	private final long fileSize;
+
+	private ByteBuffer buffer;
+
+	// position in the file of the first byte of the buffered region
+	private long regionStart;
+
+	// position in the buffered region of the next line to read
+	private int position;
+
+	private final SharedValues actionTypes = new SharedValues();
+
+	private final SharedValues comments = new SharedValues();
+
+	private final SharedValues results = new SharedValues();
+
+	// Current event
+	private long date;
+
+	private long sessionId;
+
+	private long iteration;
+
+	private boolean success;
+
+	private int duration;
+
+	private int actionTypeStart;
+
+	private int actionTypeEnd;
+
+	private int commentStart;
+
+	private int commentEnd;
+
+	private int resultStart;
+
+	private int resultEnd;
+
+	public ActionFileReader(File actionFile)
+			throws IOException {
+		this(actionFile, DEFAULT_REGION_SIZE);
+	}
+
+	ActionFileReader(File actionFile, int regionSize)
+			throws IOException {
+		this.file = new RandomAccessFile(actionFile, "r");
+		this.channel = file.getChannel();
+		this.fileSize = channel.size();
+		this.buffer = ByteBuffer.allocateDirect(regionSize);
+		read(0);
+	}
+
+	/**
+	 * Moves to the next action event of the file.
+	 *
+	 * @return false if there is no more event to read
+	 * @throws IOException if the file can't be read or holds a malformed event
+	 */
+	public boolean next()
+			throws IOException {
+		while (true) {
+			int lineEnd = findLineEnd();
+			if (lineEnd < 0) {
+				return false;
+			}
+			int lineStart = position;
+			position = lineEnd + 1;
+			if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+				lineEnd--;
+			}
+			// skip header and empty lines
+			if (lineEnd > lineStart && buffer.get(lineStart) != '#') {
+				parseLine(lineStart, lineEnd);
+				return true;
+			}
+		}
+	}
+
+	public long getDate() {
+		return date;
+	}
+
+	public long getSessionId() {
+		return sessionId;
+	}
+
+	public long getIteration() {
+		return iteration;
+	}
+
+	public boolean isSuccess() {
+		return success;
+	}
+
+	public int getDuration() {
+		return duration;
+	}
+
+	public String getActionType() {
+		return actionTypes.get(buffer, actionTypeStart, actionTypeEnd);
+	}
+
+	public String getComment() {
+		return comments.get(buffer, commentStart, commentEnd);
+	}
+
+	public String getResult() {
+		return results.get(buffer, resultStart, resultEnd);
+	}
+
+	public void close()
+			throws IOException {
+		buffer = null;
+		file.close();
+	}
+
+	/**
+	 * Returns the position in the buffered region of the end of the next line,
+	 * reading the following region of the file when the line crosses the region end.
+	 *
+	 * @return position of the line feed ending the line, or of the region end
+	 * for the last line of the file; -1 at the end of the file
+	 */
+	private int findLineEnd()
+			throws IOException {
+		while (true) {
+			int limit = buffer.limit();
+			for (int i = position; i < limit; i++) {
+				if (buffer.get(i) == '\n') {
+					return i;
+				}
+			}
+			if (regionStart + limit >= fileSize) {
+				// last line, without line feed
+				return position < limit ? limit : -1;
+			}
+			if (position == 0) {
+				// line longer than the buffer
+				buffer = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+			}
+			read(regionStart + position);
+		}
+	}
+
+	/**
+	 * Reads the region of the file starting at the given position, as far as the buffer can hold.
+	 */
+	private void read(long start)
+			throws IOException {
+		regionStart = start;
+		position = 0;
+		buffer.clear();
+		long end = Math.min(fileSize, start + buffer.capacity());
+		buffer.limit((int) (end - start));
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, start + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of file at position " + (start + buffer.position()));
+			}
+		}
+		buffer.flip();
+	}
+
+	private void parseLine(int lineStart, int lineEnd)
+			throws IOException {
+		int start = lineStart;
+		int end = nextSeparator(start, lineEnd);
+		date = parseLong(start, end);
+		start = end + 1;
+		end = nextSeparator(start, lineEnd);
+		sessionId = parseLong(start, end);
+		start = end + 1;
+		end = nextSeparator(start, lineEnd);
+		actionTypeStart = start;
+		actionTypeEnd = end;
+		start = end + 1;
+		end = nextSeparator(start, lineEnd);
+		iteration = parseLong(start, end);
+		start = end + 1;
+		end = nextSeparator(start, lineEnd);
+		success = isTrue(start, end);
+		start = end + 1;
+		end = nextSeparator(start, lineEnd);
+		duration = (int) parseLong(start, end);
+		start = end + 1;
+		end = nextSeparator(start, lineEnd);
+		commentStart = start;
+		commentEnd = end;
+		// the result is the last field, and may hold separators
+		resultStart = end + 1;
+		resultEnd = lineEnd;
+	}
+
+	private int nextSeparator(int start, int lineEnd)
+			throws IOException {
+		for (int i = start; i < lineEnd; i++) {
+			if (buffer.get(i) == ',') {
+				return i;
+			}
+		}
+		throw malformedEvent(start);
+	}
+
+	private long parseLong(int start, int end)
+			throws IOException {
+		int i = start;
+		boolean negative = false;
+		if (i < end && buffer.get(i) == '-') {
+			negative = true;
+			i++;
+		}
+		if (i == end) {
+			throw malformedEvent(start);
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			int digit = buffer.get(i) - '0';
+			if (digit < 0 || digit > 9) {
+				throw malformedEvent(start);
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Same as {@link Boolean#parseBoolean(String)}: true if the field is "true", ignoring case
+	 */
+	private boolean isTrue(int start, int end) {
+		if (end - start != TRUE.length) {
+			return false;
+		}
+		for (int i = 0; i < TRUE.length; i++) {
+			if ((buffer.get(start + i) | 0x20) != TRUE[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private IOException malformedEvent(int position) {
+		return new IOException("Malformed action event at position " + (regionStart + position));
+	}
+
+	/**
+	 * Table of the values already decoded for a text field, looked up from the
+	 * bytes of the field without decoding them. Once the table is full,
+	 * new values are decoded each time they are read.
+	 */
+	private static final class SharedValues {
+
+		private static final Charset CHARSET = Charset.defaultCharset();
+
+		private byte[][] keys = new byte[64][];
+
+		private String[] values = new String[64];
+
+		private int size;
+
+		String get(ByteBuffer buffer, int start, int end) {
+			int hash = 1;
+			for (int i = start; i < end; i++) {
+				hash = 31 * hash + buffer.get(i);
+			}
+			int mask = keys.length - 1;
+			int index = hash & mask;
+			while (keys[index] != null) {
+				if (matches(keys[index], buffer, start, end)) {
+					return values[index];
+				}
+				index = (index + 1) & mask;
+			}
+
+			byte[] key = new byte[end - start];
+			for (int i = start; i < end; i++) {
+				key[i - start] = buffer.get(i);
+			}
+			String value = new String(key, CHARSET);
+			if (size < MAX_SHARED_VALUES) {
+				keys[index] = key;
+				values[index] = value;
+				if (++size * 2 > keys.length) {
+					resize();
+				}
+			}
+			return value;
+		}
+
+		private static boolean matches(byte[] key, ByteBuffer buffer, int start, int end) {
+			if (key.length != end - start) {
+				return false;
+			}
+			for (int i = 0; i < key.length; i++) {
+				if (key[i] != buffer.get(start + i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void resize() {
+			byte[][] oldKeys = keys;
+			String[] oldValues = values;
+			keys = new byte[oldKeys.length * 2][];
+			values = new String[oldKeys.length * 2];
+			int mask = keys.length - 1;
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldKeys[i] != null) {
+					int hash = 1;
+					for (byte b : oldKeys[i]) {
+						hash = 31 * hash + b;
+					}
+					int index = hash & mask;
+					while (keys[index] != null) {
+						index = (index + 1) & mask;
+					}
+					keys[index] = oldKeys[i];
+					values[index] = oldValues[i];
+				}
+			}
+		}
+	}
+}
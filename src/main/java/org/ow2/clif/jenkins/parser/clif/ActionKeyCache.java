@@ -0,0 +1,137 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.parser.clif;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache of the action keys built from the action type and comment of action events.<br>
+ * Action events hold few distinct (action type, comment) pairs, so that the action key
+ * (concatenation of the action type and comment, possibly replaced by an alias) and the
+ * statistics it is related to are resolved once per pair instead of once per event.
+ * The number of cached pairs is bounded: once the cache is full, new pairs are resolved
+ * each time they are read.
+ *
+ * @author Bruno Dillenseger
+ */
+public class ActionKeyCache {
+
+	public static final int DEFAULT_MAX_SIZE = 4096;
+
+	private final int maxSize;
+
+	private final Map<Object, Map<Object, ActionKey>> keysByActionType = new HashMap<Object, Map<Object, ActionKey>>();
+
+	private int size;
+
+	public ActionKeyCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public ActionKeyCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @param actionType action type of the event
+	 * @param comment    comment of the event, possibly null
+	 * @return the cached key of this pair, or null if it has not been resolved yet
+	 */
+	public ActionKey get(Object actionType, Object comment) {
+		Map<Object, ActionKey> keysByComment = keysByActionType.get(actionType);
+		return keysByComment == null ? null : keysByComment.get(comment);
+	}
+
+	/**
+	 * Caches the action key resolved for a (action type, comment) pair, if the cache is not full.
+	 *
+	 * @param actionType action type of the event
+	 * @param comment    comment of the event, possibly null
+	 * @param action     action key of this pair
+	 * @return the key of this pair
+	 */
+	public ActionKey put(Object actionType, Object comment, String action) {
+		ActionKey key = new ActionKey(action);
+		if (size < maxSize) {
+			Map<Object, ActionKey> keysByComment = keysByActionType.get(actionType);
+			if (keysByComment == null) {
+				keysByComment = new HashMap<Object, ActionKey>();
+				keysByActionType.put(actionType, keysByComment);
+			}
+			keysByComment.put(comment, key);
+			size++;
+		}
+		return key;
+	}
+
+	/**
+	 * Forgets the statistics related to the cached keys, when starting the analysis
+	 * of another event type. Resolved action keys are kept.
+	 */
+	public void clearStatInfos() {
+		for (Map<Object, ActionKey> keysByComment : keysByActionType.values()) {
+			for (ActionKey key : keysByComment.values()) {
+				key.statInfo = null;
+			}
+		}
+	}
+
+	/**
+	 * Forgets all the cached keys, when the way action keys are built changes.
+	 */
+	public void clear() {
+		keysByActionType.clear();
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Action key resolved from a (action type, comment) pair, and statistics
+	 * of this action for the event type being analyzed
+	 */
+	public static class ActionKey {
+
+		private final String action;
+
+		private ActionStatInfo statInfo;
+
+		ActionKey(String action) {
+			this.action = action;
+		}
+
+		public String getAction() {
+			return action;
+		}
+
+		public ActionStatInfo getStatInfo() {
+			return statInfo;
+		}
+
+		public void setStatInfo(ActionStatInfo statInfo) {
+			this.statInfo = statInfo;
+		}
+	}
+}
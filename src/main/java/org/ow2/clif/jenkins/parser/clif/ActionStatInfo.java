@@ -21,11 +21,14 @@
  */
 package org.ow2.clif.jenkins.parser.clif;
 
-import java.io.File;
-import org.apache.commons.math.stat.descriptive.DescriptiveStatistics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
 import org.apache.commons.math.stat.descriptive.SummaryStatistics;
-import org.apache.commons.math.util.ResizableDoubleArray;
 import org.ow2.clif.jenkins.chart.*;
+import org.ow2.clif.jenkins.chart.movingstatistics.MovingStatistics;
+import org.ow2.clif.jenkins.model.LatencyHistogram;
+import org.ow2.clif.jenkins.model.SortedValues;
 
 /**
  * @author Julien Coste
@@ -42,17 +45,35 @@ public class ActionStatInfo {
 
 	private final ChartConfiguration chartConfiguration;
 
-	protected ResizableDoubleArray values = new ResizableDoubleArray();
-	protected ResizableDoubleArray dates = new ResizableDoubleArray();
+	// Collected values and dates, used to compute statistics and build charts
+	protected SampleStore samples = new SampleStore();
 
-	protected double[] valuesArray;
-	protected double[] datesArray;
+	// Samples of the merged statistics, referenced until the statistics are computed
+	private List<SampleStore> mergedSamples;
+
+	// true if the samples are referenced by another statistic, and must not be modified
+	private boolean samplesShared;
+
+	// Histogram of the values, replacing the samples in sketch mode
+	protected final LatencyHistogram histogram;
 
 	private long errors;
 
 	protected boolean statsAvailable;
 
-	private DescriptiveStatistics stat;
+	// Statistics computed from the samples
+	private long n;
+
+	private double mean;
+
+	private double standardDeviation;
+
+	private double min;
+
+	private double max;
+
+	// Values sorted once for all the percentiles and distribution charts, built on demand
+	private SortedValues sortedValues;
 
 	private CallChart callChart;
 
@@ -64,41 +85,69 @@ public class ActionStatInfo {
 
 	private QuantileDistributionChart quantileDistributionChart;
 
-	private static long firstCall = Long.MAX_VALUE;
+	// Time period shared by the stats of the same analysis, used to compute the throughput
+	private final CallPeriod period;
 
-	private static long lastCall = Long.MIN_VALUE;
-
-	static public synchronized void resetTime()
-	{
-		firstCall = Long.MAX_VALUE;
-		lastCall = Long.MIN_VALUE;
-	}
-
-	static public synchronized void addCallTime(long date)
-	{
-		// Calculate test period
-		if (date < firstCall) {
-			firstCall = date;
-		}
-		if (date > lastCall) {
-			lastCall = date;
-		}
+	public ActionStatInfo(final ParsingContext context, final ChartConfiguration chartConfiguration) {
+		this(context, chartConfiguration, new CallPeriod());
 	}
 
-	public ActionStatInfo(final ParsingContext context, final ChartConfiguration chartConfiguration) {
+	public ActionStatInfo(final ParsingContext context, final ChartConfiguration chartConfiguration,
+	                      final CallPeriod period) {
 		this.context = new ParsingContext(context);
 		this.onTheFlyStat = new SummaryStatistics();
 		this.chartConfiguration = chartConfiguration;
+		this.period = period;
+		if (context.isSketchMode() && (context.getBlade() == null || context.getBlade().isInjector())) {
+			this.histogram = new LatencyHistogram();
+		}
+		else {
+			this.histogram = null;
+		}
 	}
 
 
 	public void addStat(final long date, final double value) {
-		// Store values
-		values.addElement(value);
-		dates.addElement(date);
+		if (histogram != null) {
+			histogram.add(value);
+		}
+		else {
+			// Store values
+			samples.add(date, value);
+
+			onTheFlyStat.addValue(value);
+		}
+		period.addCallTime(date);
+	}
 
-		onTheFlyStat.addValue(value);
-		addCallTime(date);
+	/**
+	 * Adds the values, errors and call period collected by another statistic
+	 * to this one. Statistics must be merged before being computed.
+	 * The samples of the merged statistic are not copied but referenced until
+	 * this statistic is computed, the merged statistic working on a copy
+	 * of its samples if it has to modify them, and releasing them once computed.
+	 *
+	 * @param statInfo statistic to merge into this one
+	 */
+	public void merge(final ActionStatInfo statInfo) {
+		if (histogram != null) {
+			histogram.merge(statInfo.histogram);
+		}
+		else {
+			if (mergedSamples == null) {
+				mergedSamples = new ArrayList<SampleStore>();
+			}
+			if (statInfo.samples.size() > 0) {
+				mergedSamples.add(statInfo.samples);
+				statInfo.samplesShared = true;
+			}
+			if (statInfo.mergedSamples != null) {
+				mergedSamples.addAll(statInfo.mergedSamples);
+				statInfo.mergedSamples = null;
+			}
+		}
+		errors += statInfo.errors;
+		period.merge(statInfo.period);
 	}
 
 	public void incrementErrors() {
@@ -113,73 +162,217 @@ public class ActionStatInfo {
 
 	public double getThroughput() {
 		checkState();
-		if (lastCall == firstCall) {
+		if (period.getLastCall() == period.getFirstCall()) {
 			return -1;
 		}
-		return ((double) (stat.getN() * 1000)) / (lastCall - firstCall);
+		return ((double) (n * 1000)) / (period.getLastCall() - period.getFirstCall());
 	}
 
 
 	public double getMean() {
 		checkState();
-		return stat.getMean();
+		return mean;
 	}
 
 	public double getStandardDeviation() {
 		checkState();
-		return stat.getStandardDeviation();
+		return standardDeviation;
 	}
 
 	public double getMax() {
 		checkState();
-		return stat.getMax();
+		return max;
 	}
 
 	public double getMin() {
 		checkState();
-		return stat.getMin();
+		return min;
 	}
 
 	public long getN() {
 		checkState();
-		return stat.getN();
+		return n;
 	}
 
 	public double getPercentile(double p) {
 		checkState();
-		return stat.getPercentile(p);
+		if (histogram != null) {
+			return histogram.getPercentile(p);
+		}
+		return getSortedValues().getPercentile(p);
+	}
+
+	private SortedValues getSortedValues() {
+		if (sortedValues == null) {
+			sortedValues = new SortedValues(samples.getValues());
+		}
+		return sortedValues;
+	}
+
+	/**
+	 * @return the histogram of the values, built from the samples unless the values
+	 * are recorded in a histogram
+	 */
+	public LatencyHistogram getHistogram() {
+		checkState();
+		if (histogram != null) {
+			return histogram;
+		}
+		LatencyHistogram res = new LatencyHistogram();
+		for (double value : getSortedValues().getValues()) {
+			res.add(value);
+		}
+		return res;
+	}
+
+	/**
+	 * @return true if the values are recorded in a histogram instead of being kept
+	 */
+	public boolean isSketch() {
+		return histogram != null;
 	}
 
 	/**
 	 * Compute statistics and build associated graphs
 	 */
 	public void compute() {
-		// get double arrays
-		valuesArray = values.getElements();
-		datesArray = dates.getElements();
+		if (histogram != null) {
+			computeSketch();
+			return;
+		}
+		addMergedSamples();
+		samples.trimToSize();
+		sortedValues = null;
 
 		if (context.dataCleanup && (context.getBlade() == null || context.getBlade().isInjector())) {
+			if (samplesShared) {
+				SampleStore copy = new SampleStore();
+				copy.addAll(samples);
+				samples = copy;
+				samplesShared = false;
+			}
 			dataCleanup();
 		}
 
-		// Build stat objet
-		stat = new DescriptiveStatistics();
-		for (double aValuesArray : valuesArray) {
-			stat.addValue(aValuesArray);
-		}
+		computeStatistics();
 
-		// Build detailled graph
-		callChart = createCallChart();
+		// Build detailled graph, both charts over time sharing the same points sorted by date,
+		// which they don't modify
+		double[] dates = samples.getDates();
+		double[] values = samples.getValues();
+		MovingStatistics.sortByX(dates, values, dates.length);
+		callChart = createCallChart(dates, values);
 		if (context.getBlade() == null || context.getBlade().isInjector()) {
-			movingStatChart = createMovingStatChart();
-			// Build distribution graph
-			fixedSliceNumberDistributionChart = createFixedSliceNumberDistributionChart();
-			fixedSliceSizeDistributionChart = createFixedSliceSizeDistributionChart();
-			quantileDistributionChart = createQuantileDistributionChart();
+			movingStatChart = createMovingStatChart(dates, values);
+			// Build distribution graph, from the sorted values as the distributions don't depend on the order
+			double[] ascendingValues = getSortedValues().getValues();
+			fixedSliceNumberDistributionChart = createFixedSliceNumberDistributionChart(ascendingValues);
+			fixedSliceSizeDistributionChart = createFixedSliceSizeDistributionChart(ascendingValues);
+			quantileDistributionChart = createQuantileDistributionChart(getSortedValues());
+		}
+		if (samplesShared) {
+			// the samples now belong to the statistic they are merged into,
+			// which releases them one by one while adding them to its own samples
+			getSortedValues();
+			samples = null;
+		}
+		statsAvailable = true;
+	}
+
+	/**
+	 * Adds the samples of the merged statistics to the samples of this one,
+	 * in the order of the merges. Each merged store is released as soon as it
+	 * is added, so that the samples are not held twice until the end of the merge.
+	 */
+	private void addMergedSamples() {
+		if (mergedSamples == null) {
+			return;
+		}
+		int size = samples.size();
+		for (SampleStore part : mergedSamples) {
+			size += part.size();
+		}
+		samples.ensureCapacity(size);
+		for (ListIterator<SampleStore> parts = mergedSamples.listIterator(); parts.hasNext();) {
+			SampleStore part = parts.next();
+			parts.set(null);
+			samples.addAll(part);
+			if (context.dataCleanup) {
+				// the data cleanup starts from the statistics of all the values
+				for (int i = 0; i < part.size(); i++) {
+					onTheFlyStat.addValue(part.getValue(i));
+				}
+			}
 		}
+		mergedSamples = null;
+	}
+
+	/**
+	 * Computes the statistics and the distribution graphs from the histogram.
+	 * Graphs over time are not available, since the dates are not kept.
+	 */
+	private void computeSketch() {
+		n = histogram.getN();
+		mean = histogram.getMean();
+		standardDeviation = histogram.getStandardDeviation();
+		min = histogram.getMin();
+		max = histogram.getMax();
+
+		fixedSliceNumberDistributionChart = createFixedSliceNumberDistributionChart(histogram);
+		fixedSliceSizeDistributionChart = createFixedSliceSizeDistributionChart(histogram);
+		quantileDistributionChart = createQuantileDistributionChart(histogram);
 		statsAvailable = true;
 	}
 
+	/**
+	 * Computes the statistics directly from the samples, with the same formulas
+	 * as the commons-math DescriptiveStatistics.
+	 */
+	private void computeStatistics() {
+		n = samples.size();
+		if (n == 0) {
+			mean = Double.NaN;
+			standardDeviation = Double.NaN;
+			min = Double.NaN;
+			max = Double.NaN;
+			return;
+		}
+
+		// mean, with a correction of the rounding errors of the sum
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += samples.getValue(i);
+		}
+		double xbar = sum / n;
+		double correction = 0;
+		for (int i = 0; i < n; i++) {
+			correction += samples.getValue(i) - xbar;
+		}
+		mean = xbar + correction / n;
+
+		// min, max, and bias corrected variance
+		min = samples.getValue(0);
+		max = min;
+		double accum = 0;
+		double accum2 = 0;
+		for (int i = 0; i < n; i++) {
+			double value = samples.getValue(i);
+			if (!Double.isNaN(value)) {
+				min = (min < value) ? min : value;
+				max = (max > value) ? max : value;
+			}
+			double dev = value - mean;
+			accum += dev * dev;
+			accum2 += dev;
+		}
+		if (n == 1) {
+			standardDeviation = 0;
+		}
+		else {
+			standardDeviation = Math.sqrt((accum - (accum2 * accum2 / n)) / (n - 1.0));
+		}
+	}
+
 	/**
 	 * Throw an {@link IllegalStateException} if stats have not been computed.
 	 */
@@ -211,12 +404,11 @@ public class ActionStatInfo {
 		double statSum = onTheFlyStat.getSum();
 		double statDev = onTheFlyStat.getSumsq();
 
-		DoubleArraySorter.sort(valuesArray, datesArray);
+		samples.sortByValue();
 
-		double[] data = valuesArray;
 		while (statNb > minSize) {
-			double minVal = data[minStatIndex];
-			double maxVal = data[maxStatIndex];
+			double minVal = samples.getValue(minStatIndex);
+			double maxVal = samples.getValue(maxStatIndex);
 			double lowerOutOfRange = Math.round(Math.ceil(statMean - context.getKeepFactor() * statStd)) - minVal;
 			double upperOutOfRange = maxVal - Math.round(Math.floor(statMean + context.getKeepFactor() * statStd));
 			// checks if statistical rejection must be applied
@@ -224,7 +416,7 @@ public class ActionStatInfo {
 				if (lowerOutOfRange > 0) {
 					// statistical rejection can be applied
 					// try to include all-same value in the current removing
-					for (count = 1, minStatIndex++; data[minStatIndex] == minVal; minStatIndex++) {
+					for (count = 1, minStatIndex++; samples.getValue(minStatIndex) == minVal; minStatIndex++) {
 						count++;
 					}
 					// check if count doesn't pass the min size
@@ -244,7 +436,7 @@ public class ActionStatInfo {
 				if (upperOutOfRange > 0) {
 					// statistical rejection can be applied
 					// try to include all-same value in the current removing
-					for (count = 1, maxStatIndex--; data[maxStatIndex] == maxVal; maxStatIndex--) {
+					for (count = 1, maxStatIndex--; samples.getValue(maxStatIndex) == maxVal; maxStatIndex--) {
 						count++;
 					}
 					// check if count doesn't pass the min size
@@ -266,31 +458,22 @@ public class ActionStatInfo {
 			statStd = Math.sqrt(statStd);
 		}
 
-		int newLength = maxStatIndex - minStatIndex + 1;
-		double[] newValuesArray = new double[newLength];
-		double[] newDatesArray = new double[newLength];
-
-		System.arraycopy(valuesArray, minStatIndex, newValuesArray, 0, newLength);
-		System.arraycopy(datesArray, minStatIndex, newDatesArray, 0, newLength);
-
-		valuesArray = newValuesArray;
-		datesArray = newDatesArray;
+		samples.retain(minStatIndex, maxStatIndex + 1);
 	}
 
 
 	/**
 	 * Create a {@link MovingStatChart} and populate the chart
 	 *
+	 * @param dates  dates of the points, sorted
+	 * @param values values of the points
 	 * @return Chart build from the context and collected values
 	 */
-	private MovingStatChart createMovingStatChart() {
+	private MovingStatChart createMovingStatChart(double[] dates, double[] values) {
 		MovingStatChart chart =
 				new MovingStatChart(context.getTestPlanShortName(), getBladeId(context), context.getEventType(),
 				                    chartConfiguration);
-
-		for (int i = 0; i < valuesArray.length; i++) {
-			chart.addData(datesArray[i], valuesArray[i]);
-		}
+		chart.setData(dates, values);
 		return chart;
 	}
 
@@ -304,19 +487,18 @@ public class ActionStatInfo {
 	/**
 	 * Create a {@link CallChart} and populate the chart
 	 *
+	 * @param dates  dates of the points, sorted
+	 * @param values values of the points
 	 * @return Chart build from the context and collected values
 	 */
-	private CallChart createCallChart() {
+	private CallChart createCallChart(double[] dates, double[] values) {
 		final CallChart chart =
 				new CallChart(context.getTestPlanShortName(), getBladeId(context), context.getEventType(),
 				              this.chartConfiguration);
 		if (context.getBlade() != null && context.getBlade().isInjector()) {
 			chart.setScatterPlot(true);
 		}
-
-		for (int i = 0; i < valuesArray.length; i++) {
-			chart.addData(datesArray[i], valuesArray[i]);
-		}
+		chart.setData(dates, values);
 		return chart;
 	}
 
@@ -325,12 +507,20 @@ public class ActionStatInfo {
 	 *
 	 * @return Chart build from the context and collected values
 	 */
-	private FixedSliceNumberDistributionChart createFixedSliceNumberDistributionChart() {
+	private FixedSliceNumberDistributionChart createFixedSliceNumberDistributionChart(double[] values) {
 
 		final FixedSliceNumberDistributionChart chart =
 				new FixedSliceNumberDistributionChart(context.getTestPlanShortName(), getBladeId(context),
 				                                      context.getEventType(), chartConfiguration);
-		chart.addData(valuesArray);
+		chart.addData(values);
+		return chart;
+	}
+
+	private FixedSliceNumberDistributionChart createFixedSliceNumberDistributionChart(LatencyHistogram histogram) {
+		final FixedSliceNumberDistributionChart chart =
+				new FixedSliceNumberDistributionChart(context.getTestPlanShortName(), getBladeId(context),
+				                                      context.getEventType(), chartConfiguration);
+		chart.addData(histogram);
 		return chart;
 	}
 
@@ -339,12 +529,20 @@ public class ActionStatInfo {
 	 *
 	 * @return Chart build from the context and collected values
 	 */
-	private FixedSliceSizeDistributionChart createFixedSliceSizeDistributionChart() {
+	private FixedSliceSizeDistributionChart createFixedSliceSizeDistributionChart(double[] values) {
+
+		final FixedSliceSizeDistributionChart chart =
+				new FixedSliceSizeDistributionChart(context.getTestPlanShortName(), getBladeId(context),
+				                                    context.getEventType(), chartConfiguration);
+		chart.addData(values, min, max);
+		return chart;
+	}
 
+	private FixedSliceSizeDistributionChart createFixedSliceSizeDistributionChart(LatencyHistogram histogram) {
 		final FixedSliceSizeDistributionChart chart =
 				new FixedSliceSizeDistributionChart(context.getTestPlanShortName(), getBladeId(context),
 				                                    context.getEventType(), chartConfiguration);
-		chart.addData(valuesArray, stat.getMin(), stat.getMax());
+		chart.addData(histogram, min, max);
 		return chart;
 	}
 
@@ -353,29 +551,50 @@ public class ActionStatInfo {
 	 *
 	 * @return Chart build from the context and collected values
 	 */
-	private QuantileDistributionChart createQuantileDistributionChart() {
+	private QuantileDistributionChart createQuantileDistributionChart(SortedValues values) {
 		final QuantileDistributionChart chart =
 				new QuantileDistributionChart(context.getTestPlanShortName(), getBladeId(context),
 				                              context.getEventType(), this.chartConfiguration);
 
-		chart.addData(stat);
+		chart.addData(values);
 		return chart;
 	}
 
-	public void generateCharts(final File rootDir) {
-		callChart.createChart(rootDir);
+	private QuantileDistributionChart createQuantileDistributionChart(LatencyHistogram histogram) {
+		final QuantileDistributionChart chart =
+				new QuantileDistributionChart(context.getTestPlanShortName(), getBladeId(context),
+				                              context.getEventType(), this.chartConfiguration);
+		chart.addData(histogram);
+		return chart;
+	}
+
+	/**
+	 * Submits the charts to the renderer, and releases them so that their data
+	 * can be garbage collected once rendered.
+	 *
+	 * @param renderer renderer saving the charts
+	 */
+	public void generateCharts(final ChartRenderer renderer) {
+		if (callChart != null) {
+			renderer.render(callChart);
+		}
 		if (movingStatChart != null) {
-			movingStatChart.createChart(rootDir);
+			renderer.render(movingStatChart);
 		}
 		if (fixedSliceNumberDistributionChart != null) {
-			fixedSliceNumberDistributionChart.createChart(rootDir);
+			renderer.render(fixedSliceNumberDistributionChart);
 		}
 		if (fixedSliceSizeDistributionChart != null) {
-			fixedSliceSizeDistributionChart.createChart(rootDir);
+			renderer.render(fixedSliceSizeDistributionChart);
 		}
 		if (quantileDistributionChart != null) {
-			quantileDistributionChart.createChart(rootDir);
+			renderer.render(quantileDistributionChart);
 		}
+		callChart = null;
+		movingStatChart = null;
+		fixedSliceNumberDistributionChart = null;
+		fixedSliceSizeDistributionChart = null;
+		quantileDistributionChart = null;
 	}
 
 }
\ No newline at end of file
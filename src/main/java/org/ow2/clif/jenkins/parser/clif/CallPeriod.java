@@ -0,0 +1,68 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.parser.clif;
+
+/**
+ * Time period covered by the calls of an analysis, used to compute throughputs.
+ * A period is shared by all the {@link ActionStatInfo} of the same analysis
+ * (an injector event type, or the aggregated measures of a test plan), and is
+ * not shared between concurrent analyses.
+ *
+ * @author Bruno Dillenseger
+ */
+public class CallPeriod {
+
+	private long firstCall = Long.MAX_VALUE;
+
+	private long lastCall = Long.MIN_VALUE;
+
+	public void addCallTime(long date) {
+		if (date < firstCall) {
+			firstCall = date;
+		}
+		if (date > lastCall) {
+			lastCall = date;
+		}
+	}
+
+	/**
+	 * Extends this period with another one.
+	 *
+	 * @param period period to include in this one
+	 */
+	public void merge(CallPeriod period) {
+		if (period.firstCall < firstCall) {
+			firstCall = period.firstCall;
+		}
+		if (period.lastCall > lastCall) {
+			lastCall = period.lastCall;
+		}
+	}
+
+	public long getFirstCall() {
+		return firstCall;
+	}
+
+	public long getLastCall() {
+		return lastCall;
+	}
+}
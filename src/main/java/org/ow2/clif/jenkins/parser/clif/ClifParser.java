@@ -20,17 +20,27 @@
  */
 package org.ow2.clif.jenkins.parser.clif;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.commons.lang.StringUtils;
 import org.ow2.clif.jenkins.chart.ChartConfiguration;
+import org.ow2.clif.jenkins.chart.ChartRenderer;
 import org.ow2.clif.jenkins.model.*;
+import org.ow2.clif.jenkins.parser.clif.ActionKeyCache.ActionKey;
 import org.ow2.clif.storage.api.*;
 import org.ow2.clif.storage.lib.filestorage.FileStorageReader;
 import org.ow2.clif.storage.lib.util.DateEventFilter;
@@ -59,6 +69,11 @@ public class ClifParser {
 
 	private static final String ALARM_EVENT_TYPE = "alarm";
 
+	/**
+	 * Default maximum number of events read at once from the CLIF storage
+	 */
+	public static final int DEFAULT_EVENT_WINDOW_SIZE = 10000;
+
 	/*
 		* Configuration properties
 		*/
@@ -72,8 +87,30 @@ public class ClifParser {
 
 	protected final Map<String, Pattern> actionAliasPatterns = new HashMap<String, Pattern>();
 
+	// Verdicts of the successful result patterns, valid as long as patterns don't change
+	protected final ResultVerdictCache successVerdicts = new ResultVerdictCache();
+
 	private ChartConfiguration chartConfiguration;
 
+	/**
+	 * Maximum number of events read at once from the CLIF storage.
+	 * Events are streamed by windows of this size, so that the number of
+	 * {@link BladeEvent} objects alive at the same time does not depend on
+	 * the test duration.
+	 */
+	private int eventWindowSize = DEFAULT_EVENT_WINDOW_SIZE;
+
+	/**
+	 * Number of blades analyzed concurrently. Blades are analyzed one after
+	 * the other when set to 1.
+	 */
+	private int parallelism = 1;
+
+	/**
+	 * Percentiles of the response times computed for each injector action
+	 */
+	private double[] percentiles = new double[0];
+
 	protected final ParsingContext context = new ParsingContext();
 
 	/*
@@ -83,8 +120,15 @@ public class ClifParser {
 
 	protected Map<String, ActionStatInfo> statsByAction;
 
+	// Action keys resolved from the action events, valid as long as aliases don't change
+	protected final ActionKeyCache actionKeys = new ActionKeyCache();
+
+	protected CallPeriod eventTypePeriod;
+
 	protected Map<String, ActionStatInfo> aggregatedStatsByAction;
 
+	protected CallPeriod aggregatedPeriod;
+
 	protected final List<String> eventTypeToExclude = Arrays.asList("lifecycle", ALARM_EVENT_TYPE);
 
 	protected StorageRead storageRead;
@@ -98,11 +142,39 @@ public class ClifParser {
 	 */
 	private boolean generateCharts = true;
 
+	/**
+	 * Renderer of the charts, shared by the parsers of the blades analyzed concurrently
+	 */
+	protected ChartRenderer chartRenderer;
+
 	public ClifParser(String clifReportDirectory, File ouputDirectory) {
 		this.clifReportDirectory = clifReportDirectory;
 		this.ouputDirectory = ouputDirectory;
 	}
 
+	/**
+	 * Creates a parser sharing the configuration and the current test of another parser,
+	 * in order to analyze a single blade of this test.
+	 *
+	 * @param parser parser to copy the configuration from
+	 */
+	protected ClifParser(ClifParser parser) {
+		this(parser.clifReportDirectory, parser.ouputDirectory);
+		this.dateEventFilter = parser.dateEventFilter;
+		this.successfulResultPatterns.putAll(parser.successfulResultPatterns);
+		this.actionAliasPatterns.putAll(parser.actionAliasPatterns);
+		this.chartConfiguration = parser.chartConfiguration;
+		this.eventWindowSize = parser.eventWindowSize;
+		this.percentiles = parser.percentiles;
+		this.generateCharts = parser.generateCharts;
+		this.chartRenderer = parser.chartRenderer;
+		this.context.setTest(parser.context.getTest());
+		this.context.setDataCleanup(parser.context.isDataCleanup());
+		this.context.setKeepFactor(parser.context.getKeepFactor());
+		this.context.setKeepPercentage(parser.context.getKeepPercentage());
+		this.context.setSketchMode(parser.context.isSketchMode());
+	}
+
 	// --------------- Configuration methods -------------------
 	public void addDateFilter(long from, long to) {
 		dateEventFilter = new DateEventFilter(from, to);
@@ -110,10 +182,52 @@ public class ClifParser {
 
 	public void addSuccessfulResultPattern(String actionType, String pattern) {
 		successfulResultPatterns.put(actionType, Pattern.compile(pattern));
+		successVerdicts.clear();
 	}
 
 	public void addActionAliasPattern(String actionAlias, String pattern) {
 		actionAliasPatterns.put(actionAlias, Pattern.compile(pattern));
+		actionKeys.clear();
+	}
+
+	/**
+	 * Sets the maximum number of events read at once from the CLIF storage.
+	 *
+	 * @param eventWindowSize number of events per read window
+	 */
+	public void setEventWindowSize(int eventWindowSize) {
+		if (eventWindowSize <= 0) {
+			throw new IllegalArgumentException("eventWindowSize should be greater than zero");
+		}
+		this.eventWindowSize = eventWindowSize;
+	}
+
+	/**
+	 * Sets the number of blades analyzed concurrently.
+	 * Each blade analyzed concurrently holds its own measures in memory.
+	 *
+	 * @param parallelism maximum number of blades analyzed at the same time
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("parallelism should be greater than zero");
+		}
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Sets the percentiles of the response times computed for each injector action,
+	 * in addition to the median.
+	 *
+	 * @param percentiles percentiles, in ]0, 100[
+	 */
+	public void setPercentiles(double... percentiles) {
+		for (double p : percentiles) {
+			if (!(p > 0 && p < 100)) {
+				throw new IllegalArgumentException("percentiles should be greater than 0 and lesser than 100");
+			}
+		}
+		this.percentiles = percentiles.clone();
 	}
 
 	/**
@@ -134,6 +248,15 @@ public class ClifParser {
 		context.setKeepPercentage(keepPercentage);
 	}
 
+	/**
+	 * Enable the sketch mode: response times of injectors are recorded in bounded size
+	 * histograms instead of being kept in memory. Percentiles are then estimated, data
+	 * cleanup is not applied, and no chart over time is generated for injectors.
+	 */
+	public void enableSketchMode() {
+		context.setSketchMode(true);
+	}
+
 	/**
 	 * Parses the specified report directory to generate a {@link ClifReport}
 	 * for the latest test execution.
@@ -157,13 +280,26 @@ public class ClifParser {
 				}
 			}
 			context.setTest(latestTest);
+			if (generateCharts) {
+				this.chartRenderer = new ChartRenderer(this.ouputDirectory, chartConfiguration.getRenderingParallelism(),
+				                                       chartConfiguration.isLazyRendering());
+			}
 			analyzeTestPlan(null);
+			if (chartRenderer != null) {
+				chartRenderer.finish();
+			}
 		}
 		catch (Exception e) {
 			logger.println("Error during parsing of CLIF report directory " + e.getMessage());
 			e.printStackTrace();
 			throw new ClifParserException("Error during parsing of CLIF report directory");
 		}
+		finally {
+			if (chartRenderer != null) {
+				chartRenderer.abort();
+				chartRenderer = null;
+			}
+		}
 		return this.report;
 	}
 
@@ -176,23 +312,30 @@ public class ClifParser {
 			report.addTestplan(testPlan);
 
 			aggregatedStatsByAction = new HashMap<String, ActionStatInfo>();
+			aggregatedPeriod = new CallPeriod();
 
-			for (BladeDescriptor bladeDescriptor : blades) {
-				analyseBlade(testPlan, bladeDescriptor);
+			if (parallelism > 1 && blades.length > 1) {
+				analyseBladesConcurrently(testPlan, blades);
+			}
+			else {
+				for (BladeDescriptor bladeDescriptor : blades) {
+					analyseBlade(testPlan, bladeDescriptor);
+				}
 			}
 
 			// Add aggregated measures
 			for (Map.Entry<String, ActionStatInfo> entry : aggregatedStatsByAction.entrySet()) {
 				Measure m = createInjectorMeasure(entry.getKey(), entry.getValue());
 				testPlan.addAggregatedMeasure(m);
+				testPlan.addAggregatedHistogram(entry.getKey(), entry.getValue().getHistogram());
 				generateChart(entry.getValue());
 			}
 		}
 	}
 
 	private void generateChart(ActionStatInfo actionStatInfo) {
-		if (generateCharts) {
-			actionStatInfo.generateCharts(this.ouputDirectory);
+		if (chartRenderer != null) {
+			actionStatInfo.generateCharts(chartRenderer);
 		}
 	}
 
@@ -207,6 +350,114 @@ public class ClifParser {
 		context.setBlade(null);
 	}
 
+	/**
+	 * Analyzes blades concurrently, each blade being analyzed by its own parser
+	 * and storage reader. Blades, logs and aggregated statistics are then merged
+	 * in the blade order, so that the report doesn't depend on the parallelism.
+	 *
+	 * @param testPlan test plan to add the blades to
+	 * @param blades   blades to analyze
+	 * @throws ClifException if the analysis of a blade fails
+	 */
+	protected void analyseBladesConcurrently(TestPlan testPlan, BladeDescriptor[] blades)
+			throws ClifException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, blades.length));
+		try {
+			List<BladeAnalysis> analyses = new ArrayList<BladeAnalysis>(blades.length);
+			List<Future<TestPlan>> results = new ArrayList<Future<TestPlan>>(blades.length);
+			for (BladeDescriptor bladeDescriptor : blades) {
+				BladeAnalysis analysis = new BladeAnalysis(testPlan, bladeDescriptor);
+				analyses.add(analysis);
+				results.add(executor.submit(analysis));
+			}
+			for (int i = 0; i < blades.length; i++) {
+				TestPlan bladeTestPlan = results.get(i).get();
+				BladeAnalysis analysis = analyses.get(i);
+				logger.print(analysis.log.toString());
+				mergeBlade(testPlan, bladeTestPlan, analysis.parser);
+			}
+		}
+		catch (ExecutionException e) {
+			throw new ClifException("Error during analysis of blade", e.getCause());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ClifException("Analysis of blades interrupted", e);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void mergeBlade(TestPlan testPlan, TestPlan bladeTestPlan, ClifParser bladeParser) {
+		if (bladeTestPlan.getProbes() != null) {
+			for (Probe probe : bladeTestPlan.getProbes()) {
+				testPlan.addProbe(probe);
+			}
+		}
+		if (bladeTestPlan.getInjectors() != null) {
+			for (Injector injector : bladeTestPlan.getInjectors()) {
+				testPlan.addInjector(injector);
+			}
+		}
+		for (Map.Entry<String, ActionStatInfo> entry : bladeParser.aggregatedStatsByAction.entrySet()) {
+			getAggregatedStat(entry.getKey()).merge(entry.getValue());
+		}
+	}
+
+	/**
+	 * Merges the statistics of the current injector event type into the aggregated
+	 * statistics of the test plan. Statistics must be merged before being computed.
+	 */
+	protected void mergeIntoAggregatedStats() {
+		for (Map.Entry<String, ActionStatInfo> entry : statsByAction.entrySet()) {
+			getAggregatedStat(entry.getKey()).merge(entry.getValue());
+		}
+	}
+
+	private ActionStatInfo getAggregatedStat(String action) {
+		ActionStatInfo statInfo = aggregatedStatsByAction.get(action);
+		if (statInfo == null) {
+			ParsingContext aggregatedContext = new ParsingContext(context);
+			aggregatedContext.setBlade(null);
+			aggregatedContext.setEventType(action);
+			statInfo = new ActionStatInfo(aggregatedContext, this.chartConfiguration, aggregatedPeriod);
+			aggregatedStatsByAction.put(action, statInfo);
+		}
+		return statInfo;
+	}
+
+	/**
+	 * Analysis of a single blade by a dedicated parser, logging into a buffer
+	 */
+	private class BladeAnalysis
+			implements Callable<TestPlan> {
+
+		private final TestPlan bladeTestPlan;
+
+		private final BladeDescriptor bladeDescriptor;
+
+		private final ClifParser parser;
+
+		private final ByteArrayOutputStream log = new ByteArrayOutputStream();
+
+		BladeAnalysis(TestPlan testPlan, BladeDescriptor bladeDescriptor) {
+			this.bladeTestPlan = new TestPlan(testPlan.getName(), testPlan.getDate());
+			this.bladeDescriptor = bladeDescriptor;
+			this.parser = new ClifParser(ClifParser.this);
+		}
+
+		public TestPlan call()
+				throws Exception {
+			parser.logger = new PrintStream(log, true);
+			parser.storageRead = new FileStorageReader(parser.clifReportDirectory, false);
+			parser.aggregatedStatsByAction = new HashMap<String, ActionStatInfo>();
+			parser.aggregatedPeriod = new CallPeriod();
+			parser.analyseBlade(bladeTestPlan, bladeDescriptor);
+			return bladeTestPlan;
+		}
+	}
+
 	protected static String extractTestPlanName(String clifTestPlanName) {
 		int nbUnderScore = StringUtils.countMatches(clifTestPlanName, "_");
 		if (nbUnderScore < 2) {
@@ -291,32 +542,40 @@ public class ClifParser {
 			throws ClifException {
 		logger.println("    - Analyzing probe event type: " + context.getEventType());
 
+		String eventType = context.getEventType();
 		String[] labels = this.storageRead.getEventFieldLabels(context.getTest().getName(), context.getBlade().getId(),
-		                                                       context.getEventType());
-		BladeEvent[] events =
-				this.storageRead
-						.getEvents(context.getTest().getName(), context.getBlade().getId(), context.getEventType(),
-						           dateEventFilter, 0, -1);
+		                                                       eventType);
 
 		// Init stats and charts
 		ActionStatInfo[] statsInfo = new ActionStatInfo[labels.length];
+		CallPeriod period = new CallPeriod();
 
 		for (int i = 1; i < labels.length; i++) {
 			context.setEventType(labels[i]);
-			statsInfo[i] = new ActionStatInfo(context, this.chartConfiguration);
+			statsInfo[i] = new ActionStatInfo(context, this.chartConfiguration, period);
 		}
 
-		// Parsing bladeEvents to compute stats and build charts
-		logger.println("    - " + events.length + " events to analyze");
-		for (BladeEvent bladeEvent : events) {
-			// Start from 1 in order to ignore "date" label
-			for (int i = 1; i < labels.length; i++) {
-				context.setEventType(labels[i]);
-				double value = toDouble(bladeEvent.getFieldValue(labels[i]));
+		// Parsing bladeEvents window by window to compute stats and build charts
+		long offset = 0;
+		long analyzed = 0;
+		BladeEvent[] events = getEventWindow(eventType, offset);
+		while (events.length > 0) {
+			for (BladeEvent bladeEvent : events) {
+				if (!isAccepted(bladeEvent)) {
+					continue;
+				}
+				analyzed++;
 				long date = (Long) bladeEvent.getFieldValue(EVENT_DATE);
-				statsInfo[i].addStat(date, value);
+				// Start from 1 in order to ignore "date" label
+				for (int i = 1; i < labels.length; i++) {
+					double value = toDouble(bladeEvent.getFieldValue(labels[i]));
+					statsInfo[i].addStat(date, value);
+				}
 			}
+			offset += events.length;
+			events = getEventWindow(eventType, offset);
 		}
+		logger.println("    - " + analyzed + " events analyzed");
 
 		// Create measures and charts
 		for (int i = 1; i < labels.length; i++) {
@@ -333,25 +592,41 @@ public class ClifParser {
 		logger.println("    - Analyzing injector event type: " + context.getEventType());
 
 		statsByAction = new HashMap<String, ActionStatInfo>();
-		ActionStatInfo.resetTime();
-
-		BladeEvent[] events =
-				this.storageRead
-						.getEvents(context.getTest().getName(), context.getBlade().getId(), context.getEventType(),
-						           dateEventFilter, 0, -1);
-		logger.println("    - " + events.length + " events to analyze");
-		for (BladeEvent actionEvent : events) {
-			String action = buildAction(actionEvent);
-			context.setEventType(action);
-
-			if (isEventInError(actionEvent)) {
-				addError(action);
-			}
-			else {
-				addEventToStat(action, actionEvent);
+		eventTypePeriod = new CallPeriod();
+		actionKeys.clearStatInfos();
+
+		String eventType = context.getEventType();
+		long analyzed = 0;
+		File actionFile = getActionFile(eventType);
+		if (actionFile != null) {
+			analyzed = analyzeActionFile(actionFile);
+		}
+		else {
+			long offset = 0;
+			BladeEvent[] events = getEventWindow(eventType, offset);
+			while (events.length > 0) {
+				for (BladeEvent actionEvent : events) {
+					if (!isAccepted(actionEvent)) {
+						continue;
+					}
+					analyzed++;
+					ActionKey key = resolveAction(actionEvent);
+					context.setEventType(key.getAction());
+
+					if (isEventInError(actionEvent)) {
+						addError(key);
+					}
+					else {
+						addEventToStat(key, actionEvent);
+					}
+				}
+				offset += events.length;
+				events = getEventWindow(eventType, offset);
 			}
 		}
+		logger.println("    - " + analyzed + " events analyzed");
 
+		mergeIntoAggregatedStats();
 		for (Map.Entry<String, ActionStatInfo> entry : statsByAction.entrySet()) {
 			Measure m = createInjectorMeasure(entry.getKey(), entry.getValue());
 			injector.addMeasure(m);
@@ -359,54 +634,101 @@ public class ClifParser {
 		}
 	}
 
-	protected void addError(String action) {
-		ActionStatInfo statInfo = statsByAction.get(action);
-		if (statInfo == null) {
-			statInfo = new ActionStatInfo(context, this.chartConfiguration);
-			statsByAction.put(action, statInfo);
+	/**
+	 * Returns the file holding the action events of the current blade, when these events
+	 * can be read directly from this file: the storage is a plain CLIF file storage,
+	 * events have the action event fields, and no date filter is set.
+	 *
+	 * @param eventType type of the action events
+	 * @return the action file, or null if events must be read through the storage API
+	 * @throws ClifException if the storage can't be read
+	 */
+	protected File getActionFile(String eventType)
+			throws ClifException {
+		if (dateEventFilter != null || !(storageRead instanceof FileStorageReader)) {
+			return null;
 		}
-		statInfo.incrementErrors();
-		addAggregatedError(action);
+		String[] labels =
+				this.storageRead.getEventFieldLabels(context.getTest().getName(), context.getBlade().getId(), eventType);
+		if (!Arrays.equals(ActionFileReader.FIELD_LABELS, labels)) {
+			return null;
+		}
+		File actionFile = new File(new File(new File(clifReportDirectory, context.getTest().getName()),
+		                                    context.getBlade().getId()), eventType);
+		return actionFile.isFile() ? actionFile : null;
 	}
 
-	private void addAggregatedError(String action) {
-		ActionStatInfo statInfo = aggregatedStatsByAction.get(action);
-		if (statInfo == null) {
-			BladeDescriptor currentBlade = context.getBlade();
-			context.setBlade(null);
-			statInfo = new ActionStatInfo(context, this.chartConfiguration);
-			context.setBlade(currentBlade);
-			aggregatedStatsByAction.put(action, statInfo);
+	/**
+	 * Analyzes the action events of the current blade by reading them directly from the action file.
+	 *
+	 * @param actionFile file holding the action events
+	 * @return number of events analyzed
+	 * @throws ClifException if the file can't be read
+	 */
+	protected long analyzeActionFile(File actionFile)
+			throws ClifException {
+		long count = 0;
+		try {
+			ActionFileReader reader = new ActionFileReader(actionFile);
+			try {
+				while (reader.next()) {
+					String actionType = reader.getActionType();
+					ActionKey key = resolveAction(actionType, reader.getComment());
+					context.setEventType(key.getAction());
+
+					if (!reader.isSuccess()
+					    || (successfulResultPatterns.containsKey(actionType)
+					        && !isSuccessfulResult(actionType, reader.getResult()))) {
+						addError(key);
+					}
+					else {
+						addEventToStat(key, reader.getDate(), reader.getDuration());
+					}
+					count++;
+				}
+			}
+			finally {
+				reader.close();
+			}
 		}
-
-		statInfo.incrementErrors();
+		catch (IOException e) {
+			throw new ClifException("Error while reading action file " + actionFile, e);
+		}
+		return count;
 	}
 
-	protected void addEventToStat(String action, BladeEvent actionEvent) {
-		ActionStatInfo statInfo = statsByAction.get(action);
-		if (statInfo == null) {
-			statInfo = new ActionStatInfo(context, this.chartConfiguration);
-			statsByAction.put(action, statInfo);
-		}
+	protected void addError(ActionKey key) {
+		getStatInfo(key).incrementErrors();
+	}
 
+	protected void addEventToStat(ActionKey key, BladeEvent actionEvent) {
 		int duration = (Integer) actionEvent.getFieldValue(EVENT_DURATION);
 		long date = (Long) actionEvent.getFieldValue(EVENT_DATE);
+		addEventToStat(key, date, duration);
+	}
 
-		statInfo.addStat(date, duration);
-		addEventToAggregatedStat(action, date, duration);
+	protected void addEventToStat(ActionKey key, long date, int duration) {
+		getStatInfo(key).addStat(date, duration);
 	}
 
-	protected void addEventToAggregatedStat(String action, long date, int duration) {
-		ActionStatInfo statInfo = aggregatedStatsByAction.get(action);
+	/**
+	 * Returns the statistics of an action for the current event type,
+	 * creating them on the first event of the action.
+	 *
+	 * @param key action key
+	 * @return statistics of the action
+	 */
+	protected ActionStatInfo getStatInfo(ActionKey key) {
+		ActionStatInfo statInfo = key.getStatInfo();
 		if (statInfo == null) {
-			BladeDescriptor currentBlade = context.getBlade();
-			context.setBlade(null);
-			statInfo = new ActionStatInfo(context, this.chartConfiguration);
-			context.setBlade(currentBlade);
-			aggregatedStatsByAction.put(action, statInfo);
+			statInfo = statsByAction.get(key.getAction());
+			if (statInfo == null) {
+				statInfo = new ActionStatInfo(context, this.chartConfiguration, eventTypePeriod);
+				statsByAction.put(key.getAction(), statInfo);
+			}
+			key.setStatInfo(statInfo);
 		}
-
-		statInfo.addStat(date, duration);
+		return statInfo;
 	}
 
 	protected boolean isEventInError(BladeEvent actionEvent) {
@@ -420,20 +742,57 @@ public class ClifParser {
 	}
 
 	protected boolean isSuccessfulResult(BladeEvent actionEvent) {
-		String result = actionEvent.getFieldValue(EVENT_RESULT).toString();
-		String actionType = actionEvent.getFieldValue(EVENT_ACTION_TYPE).toString();
+		// the result is converted to a string only for the action types having a pattern
+		Object actionType = actionEvent.getFieldValue(EVENT_ACTION_TYPE);
+		if (!successfulResultPatterns.containsKey(actionType)) {
+			return true;
+		}
+		return isSuccessfulResult(actionType.toString(), actionEvent.getFieldValue(EVENT_RESULT).toString());
+	}
 
+	protected boolean isSuccessfulResult(String actionType, String result) {
 		Pattern pattern = this.successfulResultPatterns.get(actionType);
 		if (pattern != null) {
-			Matcher m = pattern.matcher(result);
-			return m.matches();
+			Boolean verdict = successVerdicts.get(actionType, result);
+			if (verdict == null) {
+				Matcher m = pattern.matcher(result);
+				verdict = m.matches();
+				successVerdicts.put(actionType, result, verdict);
+			}
+			return verdict;
 		}
 		return true;
 	}
 
-	protected String buildAction(BladeEvent actionEvent) {
+	protected ActionKey resolveAction(BladeEvent actionEvent) {
 		Object actionType = actionEvent.getFieldValue(EVENT_ACTION_TYPE);
 		Object comment = actionEvent.getFieldValue(EVENT_COMMENT);
+		return resolveAction(actionType, comment);
+	}
+
+	/**
+	 * Returns the key of the action of an event, built on the first event
+	 * of each (action type, comment) pair and then taken from the cache.
+	 *
+	 * An empty comment is handled as no comment, since it is read as an empty string
+	 * from the action file but may be null when read through the storage API.
+	 *
+	 * @param actionType action type of the event
+	 * @param comment    comment of the event, possibly null
+	 * @return the action key
+	 */
+	protected ActionKey resolveAction(Object actionType, Object comment) {
+		if ("".equals(comment)) {
+			comment = null;
+		}
+		ActionKey key = actionKeys.get(actionType, comment);
+		if (key == null) {
+			key = actionKeys.put(actionType, comment, buildAction(actionType, comment));
+		}
+		return key;
+	}
+
+	protected String buildAction(Object actionType, Object comment) {
 		StringBuilder sb = new StringBuilder();
 		sb.append(actionType);
 		if (comment != null) {
@@ -468,6 +827,13 @@ public class ClifParser {
 		m.setSize(statInfo.getN());
 		m.setCountErrors(statInfo.getErrors());
 		m.setThroughput(statInfo.getThroughput());
+		m.setSketch(statInfo.isSketch());
+		// percentiles are read from the values sorted once, or from the histogram
+		long[] percentileValues = new long[percentiles.length];
+		for (int i = 0; i < percentiles.length; i++) {
+			percentileValues[i] = (long) statInfo.getPercentile(percentiles[i]);
+		}
+		m.setPercentiles(percentiles, percentileValues);
 		return m;
 	}
 
@@ -494,17 +860,50 @@ public class ClifParser {
 
 	private void loadAlarms(Blade blade)
 			throws ClifException {
-		BladeEvent[] events =
-				this.storageRead.getEvents(context.getTest().getName(), context.getBlade().getId(), ALARM_EVENT_TYPE,
-				                           dateEventFilter, 0, -1);
-		logger.println("    - " + events.length + " alarms to load");
-		for (BladeEvent bladeEvent : events) {
-			AlarmEvent alarmEvent = (AlarmEvent) bladeEvent;
-			Alarm alarm = new Alarm(alarmEvent.getDate(),
-			                        Alarm.Severity.fromValue((Integer) alarmEvent.getFieldValue("severity")),
-			                        (String) alarmEvent.getFieldValue("argument"));
-			blade.addAlarm(alarm);
+		long offset = 0;
+		long loaded = 0;
+		BladeEvent[] events = getEventWindow(ALARM_EVENT_TYPE, offset);
+		while (events.length > 0) {
+			for (BladeEvent bladeEvent : events) {
+				if (!isAccepted(bladeEvent)) {
+					continue;
+				}
+				loaded++;
+				AlarmEvent alarmEvent = (AlarmEvent) bladeEvent;
+				Alarm alarm = new Alarm(alarmEvent.getDate(),
+				                        Alarm.Severity.fromValue((Integer) alarmEvent.getFieldValue("severity")),
+				                        (String) alarmEvent.getFieldValue("argument"));
+				blade.addAlarm(alarm);
+			}
+			offset += events.length;
+			events = getEventWindow(ALARM_EVENT_TYPE, offset);
 		}
+		logger.println("    - " + loaded + " alarms loaded");
+	}
+
+	/**
+	 * Reads a window of events of the current blade from the CLIF storage.
+	 * The date filter is not given to the storage but applied by {@link #isAccepted(BladeEvent)},
+	 * so that offsets always count the stored events, and only an empty window means that
+	 * there is no more event to read.
+	 *
+	 * @param eventType type of events to read
+	 * @param offset    index of the first event to read
+	 * @return at most {@link #eventWindowSize} events, none when there is no more event to read
+	 * @throws ClifException if the storage can't be read
+	 */
+	protected BladeEvent[] getEventWindow(String eventType, long offset)
+			throws ClifException {
+		return this.storageRead.getEvents(context.getTest().getName(), context.getBlade().getId(), eventType,
+		                                  null, offset, eventWindowSize);
+	}
+
+	/**
+	 * @param event event read by {@link #getEventWindow(String, long)}
+	 * @return true if the event passes the date filter, if any
+	 */
+	protected boolean isAccepted(BladeEvent event) {
+		return dateEventFilter == null || dateEventFilter.accept(event);
 	}
 
 	/**
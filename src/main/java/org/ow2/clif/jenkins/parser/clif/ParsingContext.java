@@ -41,6 +41,8 @@ public class ParsingContext {
 
 	protected double keepPercentage;
 
+	protected boolean sketchMode;
+
 	public ParsingContext() {
 	}
 
@@ -51,6 +53,7 @@ public class ParsingContext {
 		this.dataCleanup = ctx.dataCleanup;
 		this.keepFactor = ctx.keepFactor;
 		this.keepPercentage = ctx.keepPercentage;
+		this.sketchMode = ctx.sketchMode;
 	}
 
 	public boolean isDataCleanup() {
@@ -77,6 +80,14 @@ public class ParsingContext {
 		this.keepPercentage = keepPercentage;
 	}
 
+	public boolean isSketchMode() {
+		return sketchMode;
+	}
+
+	public void setSketchMode(boolean sketchMode) {
+		this.sketchMode = sketchMode;
+	}
+
 	public TestDescriptor getTest() {
 		return test;
 	}
@@ -0,0 +1,95 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.parser.clif;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache of the verdicts of the successful result patterns, by action type and result.<br>
+ * Action events usually hold few distinct results (such as HTTP status codes), so that
+ * a successful result pattern is matched once per distinct result instead of once per event.
+ * The number of cached verdicts is bounded: once the cache is full, new results
+ * are matched each time they are read.
+ *
+ * @author Bruno Dillenseger
+ */
+public class ResultVerdictCache {
+
+	public static final int DEFAULT_MAX_SIZE = 4096;
+
+	private final int maxSize;
+
+	private final Map<String, Map<String, Boolean>> verdictsByActionType = new HashMap<String, Map<String, Boolean>>();
+
+	private int size;
+
+	public ResultVerdictCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public ResultVerdictCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @param actionType action type of the event
+	 * @param result     result of the event
+	 * @return the cached verdict, or null if this result has not been matched yet
+	 */
+	public Boolean get(String actionType, String result) {
+		Map<String, Boolean> verdictsByResult = verdictsByActionType.get(actionType);
+		return verdictsByResult == null ? null : verdictsByResult.get(result);
+	}
+
+	/**
+	 * Caches the verdict for a result, if the cache is not full.
+	 *
+	 * @param actionType action type of the event
+	 * @param result     result of the event
+	 * @param successful true if the result matches the successful result pattern of the action type
+	 */
+	public void put(String actionType, String result, boolean successful) {
+		if (size < maxSize) {
+			Map<String, Boolean> verdictsByResult = verdictsByActionType.get(actionType);
+			if (verdictsByResult == null) {
+				verdictsByResult = new HashMap<String, Boolean>();
+				verdictsByActionType.put(actionType, verdictsByResult);
+			}
+			if (verdictsByResult.put(result, successful) == null) {
+				size++;
+			}
+		}
+	}
+
+	/**
+	 * Forgets all the cached verdicts, when the successful result patterns change.
+	 */
+	public void clear() {
+		verdictsByActionType.clear();
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+}
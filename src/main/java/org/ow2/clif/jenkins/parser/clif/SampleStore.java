@@ -0,0 +1,332 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.parser.clif;
+
+/**
+ * Compact columnar storage of (date, value) samples.<br>
+ * Values are stored as ints as long as they are integers (such as response times
+ * in milliseconds), and switch to doubles otherwise. Dates are stored as int offsets
+ * from the first date, and switch to longs when an offset exceeds the int range.
+ * Storing a response time thus costs 8 bytes instead of 16 bytes for a pair of doubles.
+ *
+ * @author Bruno Dillenseger
+ */
+public class SampleStore {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private int size;
+
+	// values, in only one of these arrays
+	private int[] intValues = new int[INITIAL_CAPACITY];
+
+	private double[] doubleValues;
+
+	// dates, in only one of these arrays
+	private long baseDate;
+
+	private int[] dateOffsets = new int[INITIAL_CAPACITY];
+
+	private long[] longDates;
+
+	public void add(long date, double value) {
+		if (size == capacity()) {
+			grow(size + (size >> 1) + 1);
+		}
+		if (size == 0) {
+			baseDate = date;
+		}
+		setValue(size, value);
+		setDate(size, date);
+		size++;
+	}
+
+	/**
+	 * Adds all the samples of another store, in their order in this store.
+	 *
+	 * @param store samples to add
+	 */
+	public void addAll(SampleStore store) {
+		ensureCapacity(size + store.size);
+		for (int i = 0; i < store.size; i++) {
+			add(store.getDate(i), store.getValue(i));
+		}
+	}
+
+	/**
+	 * Allocates in advance the memory for the given number of samples.
+	 *
+	 * @param capacity number of samples to hold without allocating memory
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity > capacity()) {
+			grow(capacity);
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public double getValue(int index) {
+		return intValues != null ? intValues[index] : doubleValues[index];
+	}
+
+	public long getDate(int index) {
+		return dateOffsets != null ? baseDate + dateOffsets[index] : longDates[index];
+	}
+
+	/**
+	 * @return a copy of the values, as doubles
+	 */
+	public double[] getValues() {
+		double[] values = new double[size];
+		for (int i = 0; i < size; i++) {
+			values[i] = getValue(i);
+		}
+		return values;
+	}
+
+	/**
+	 * @return a copy of the dates, as doubles
+	 */
+	public double[] getDates() {
+		double[] dates = new double[size];
+		for (int i = 0; i < size; i++) {
+			dates[i] = getDate(i);
+		}
+		return dates;
+	}
+
+	/**
+	 * Keeps only the samples in the given range, releasing the memory of the other ones.
+	 *
+	 * @param fromIndex index of the first sample to keep
+	 * @param toIndex   index following the last sample to keep
+	 */
+	public void retain(int fromIndex, int toIndex) {
+		int newSize = toIndex - fromIndex;
+		if (intValues != null) {
+			intValues = copy(intValues, fromIndex, newSize);
+		}
+		else {
+			doubleValues = copy(doubleValues, fromIndex, newSize);
+		}
+		if (dateOffsets != null) {
+			dateOffsets = copy(dateOffsets, fromIndex, newSize);
+		}
+		else {
+			longDates = copy(longDates, fromIndex, newSize);
+		}
+		size = newSize;
+	}
+
+	/**
+	 * Releases the memory allocated in advance for the next samples.
+	 */
+	public void trimToSize() {
+		if (size < capacity()) {
+			retain(0, size);
+		}
+	}
+
+	/**
+	 * Sorts the samples by ascending value. Samples are sorted with the same algorithm
+	 * as {@link DoubleArraySorter}, so that equal values end in the same order.
+	 */
+	public void sortByValue() {
+		sort1(0, size);
+	}
+
+	private int capacity() {
+		return intValues != null ? intValues.length : doubleValues.length;
+	}
+
+	private void grow(int capacity) {
+		if (intValues != null) {
+			intValues = copy(intValues, 0, capacity);
+		}
+		else {
+			doubleValues = copy(doubleValues, 0, capacity);
+		}
+		if (dateOffsets != null) {
+			dateOffsets = copy(dateOffsets, 0, capacity);
+		}
+		else {
+			longDates = copy(longDates, 0, capacity);
+		}
+	}
+
+	private void setValue(int index, double value) {
+		if (intValues != null) {
+			int intValue = (int) value;
+			if (intValue == value) {
+				intValues[index] = intValue;
+				return;
+			}
+			// not an integer: switch to doubles
+			doubleValues = new double[intValues.length];
+			for (int i = 0; i < size; i++) {
+				doubleValues[i] = intValues[i];
+			}
+			intValues = null;
+		}
+		doubleValues[index] = value;
+	}
+
+	private void setDate(int index, long date) {
+		if (dateOffsets != null) {
+			long offset = date - baseDate;
+			if (offset >= Integer.MIN_VALUE && offset <= Integer.MAX_VALUE) {
+				dateOffsets[index] = (int) offset;
+				return;
+			}
+			// offset out of the int range: switch to absolute dates
+			longDates = new long[dateOffsets.length];
+			for (int i = 0; i < size; i++) {
+				longDates[i] = baseDate + dateOffsets[i];
+			}
+			dateOffsets = null;
+		}
+		longDates[index] = date;
+	}
+
+	private void swap(int a, int b) {
+		if (intValues != null) {
+			int t = intValues[a];
+			intValues[a] = intValues[b];
+			intValues[b] = t;
+		}
+		else {
+			double t = doubleValues[a];
+			doubleValues[a] = doubleValues[b];
+			doubleValues[b] = t;
+		}
+		if (dateOffsets != null) {
+			int t = dateOffsets[a];
+			dateOffsets[a] = dateOffsets[b];
+			dateOffsets[b] = t;
+		}
+		else {
+			long t = longDates[a];
+			longDates[a] = longDates[b];
+			longDates[b] = t;
+		}
+	}
+
+	/**
+	 * Sorts the specified range of samples, see {@link DoubleArraySorter}.
+	 */
+	private void sort1(int off, int len) {
+		// Insertion sort on smallest arrays
+		if (len < 7) {
+			for (int i = off; i < len + off; i++) {
+				for (int j = i; j > off && getValue(j - 1) > getValue(j); j--) {
+					swap(j, j - 1);
+				}
+			}
+			return;
+		}
+
+		// Choose a partition element, v
+		int m = off + (len >> 1);       // Small arrays, middle element
+		if (len > 7) {
+			int l = off;
+			int n = off + len - 1;
+			if (len > 40) {        // Big arrays, pseudomedian of 9
+				int s = len / 8;
+				l = med3(l, l + s, l + 2 * s);
+				m = med3(m - s, m, m + s);
+				n = med3(n - 2 * s, n - s, n);
+			}
+			m = med3(l, m, n); // Mid-size, med of 3
+		}
+		double v = getValue(m);
+
+		// Establish Invariant: v* (<v)* (>v)* v*
+		int a = off, b = a, c = off + len - 1, d = c;
+		while (true) {
+			while (b <= c && getValue(b) <= v) {
+				if (getValue(b) == v) {
+					swap(a++, b);
+				}
+				b++;
+			}
+			while (c >= b && getValue(c) >= v) {
+				if (getValue(c) == v) {
+					swap(c, d--);
+				}
+				c--;
+			}
+			if (b > c) {
+				break;
+			}
+			swap(b++, c--);
+		}
+
+		// Swap partition elements back to middle
+		int s, n = off + len;
+		s = Math.min(a - off, b - a);
+		vecswap(off, b - s, s);
+		s = Math.min(d - c, n - d - 1);
+		vecswap(b, n - s, s);
+
+		// Recursively sort non-partition-elements
+		if ((s = b - a) > 1) {
+			sort1(off, s);
+		}
+		if ((s = d - c) > 1) {
+			sort1(n - s, s);
+		}
+	}
+
+	private void vecswap(int a, int b, int n) {
+		for (int i = 0; i < n; i++, a++, b++) {
+			swap(a, b);
+		}
+	}
+
+	private int med3(int a, int b, int c) {
+		double x = getValue(a);
+		double y = getValue(b);
+		double z = getValue(c);
+		return (x < y ? (y < z ? b : x < z ? c : a) : (y > z ? b : x > z ? c : a));
+	}
+
+	private static int[] copy(int[] array, int from, int length) {
+		int[] res = new int[length];
+		System.arraycopy(array, from, res, 0, Math.min(length, array.length - from));
+		return res;
+	}
+
+	private static double[] copy(double[] array, int from, int length) {
+		double[] res = new double[length];
+		System.arraycopy(array, from, res, 0, Math.min(length, array.length - from));
+		return res;
+	}
+
+	private static long[] copy(long[] array, int from, int length) {
+		long[] res = new long[length];
+		System.arraycopy(array, from, res, 0, Math.min(length, array.length - from));
+		return res;
+	}
+}
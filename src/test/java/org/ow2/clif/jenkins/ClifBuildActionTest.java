@@ -0,0 +1,122 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.Date;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.clif.jenkins.model.ClifReport;
+import org.ow2.clif.jenkins.model.LatencyHistogram;
+import org.ow2.clif.jenkins.model.Measure;
+import org.ow2.clif.jenkins.model.TestPlan;
+import hudson.model.AbstractBuild;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class ClifBuildActionTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void reportIsStoredInReportFile() throws Exception {
+		TestPlan testPlan = new TestPlan("plan", new Date());
+		testPlan.addAggregatedMeasure(new Measure("login", 8, 10, 9, 1, 100, 0.25, 1.5, 2));
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.add(12);
+		histogram.add(1000);
+		testPlan.addAggregatedHistogram("login", histogram);
+		ClifReport report = new ClifReport();
+		report.addTestplan(testPlan);
+
+		AbstractBuild<?, ?> build = mock(AbstractBuild.class);
+		doReturn(folder.getRoot()).when(build).getRootDir();
+		PrintStream logger = new PrintStream(new NullOutputStream());
+		ClifBuildAction action = new ClifBuildAction(build, report, null, logger);
+		assertFalse(new File(folder.getRoot(), ClifBuildAction.REPORT_FILE).exists());
+		action.storeReport(logger);
+		assertTrue(new File(folder.getRoot(), ClifBuildAction.REPORT_FILE).isFile());
+		assertEquals(1, action.getReport().getTestplans().size());
+
+		ClifReport read = ClifBuildAction.readReport(folder.getRoot());
+		assertEquals("plan", read.getTestplans().get(0).getName());
+		assertEquals("login", read.getTestplans().get(0).getAggregatedMeasures().get(0).getName());
+
+		// histograms are stored apart from the report, which is left unchanged
+		assertNull(read.getTestplans().get(0).getAggregatedHistograms());
+		assertEquals(2, testPlan.getAggregatedHistogram("login").getN());
+		assertTrue(new File(folder.getRoot(), ClifBuildAction.HISTOGRAM_FILE).isFile());
+		assertEquals(2, action.getHistogram("plan", "login").getN());
+		assertEquals(1000, action.getHistogram("plan", "login").getMax(), 0);
+		assertNull(action.getHistogram("plan", "logout"));
+		assertNull(action.getHistogram("other plan", "login"));
+	}
+
+	@Test
+	public void legacyReportIsMovedToReportFileWhenRead() throws Exception {
+		TestPlan testPlan = new TestPlan("plan", new Date());
+		testPlan.addAggregatedMeasure(new Measure("login", 8, 10, 9, 1, 100, 0.25, 1.5, 2));
+		ClifReport report = new ClifReport();
+		report.addTestplan(testPlan);
+
+		AbstractBuild<?, ?> build = mock(AbstractBuild.class);
+		doReturn(folder.getRoot()).when(build).getRootDir();
+		ClifBuildAction action = new ClifBuildAction(build, report, null, new PrintStream(new NullOutputStream()));
+		File reportFile = new File(folder.getRoot(), ClifBuildAction.REPORT_FILE);
+		assertFalse(reportFile.exists());
+
+		// the report file is written, build.xml being rewritten by the next save of the build
+		assertEquals("plan", action.getReport().getTestplans().get(0).getName());
+		assertTrue(reportFile.isFile());
+		verify(build, never()).save();
+		assertEquals("plan", ClifBuildAction.readReport(folder.getRoot()).getTestplans().get(0).getName());
+		assertEquals("plan", action.getReport().getTestplans().get(0).getName());
+	}
+
+	@Test(expected = IOException.class)
+	public void unknownClassInReportFileIsNotRead() throws Exception {
+		File reportFile = new File(folder.getRoot(), ClifBuildAction.REPORT_FILE);
+		Writer out = new OutputStreamWriter(new GZIPOutputStream(new FileOutputStream(reportFile)), "UTF-8");
+		try {
+			out.write("<not.a.Class/>");
+		}
+		finally {
+			out.close();
+		}
+		ClifBuildAction.readReport(folder.getRoot());
+	}
+}
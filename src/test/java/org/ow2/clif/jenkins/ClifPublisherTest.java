@@ -22,6 +22,8 @@ package org.ow2.clif.jenkins;
 
 import org.junit.Test;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class ClifPublisherTest {
 
@@ -35,5 +37,26 @@ public class ClifPublisherTest {
 		ClifDataCleanup cleanup = publisher.getDataCleanupConfig();
 		assertEquals(2.0, cleanup.getKeepFactor(), 0.1);
 		assertEquals(95.0, cleanup.getKeepPercentage(), 0.1);
+
+		assertEquals(1, publisher.getAnalysisConfig().getParallelism());
+		assertFalse(publisher.isMovingPercentiles());
+		assertTrue(publisher.isLazyCharts());
+		assertEquals(1, publisher.getChartParallelism());
+		assertEquals(100000, publisher.getScatterDensityThreshold());
+	}
+
+	@Test
+	public void optionalSettings() throws Exception {
+		ClifPublisher publisher = new ClifPublisher("bar", false, "", "", 1200, 600, 50, 15, 5);
+		publisher.setMovingPercentiles(true);
+		publisher.setLazyCharts(false);
+		publisher.setChartParallelism(4);
+		publisher.setScatterDensityThreshold(1000);
+		publisher.setAnalysisConfig(new ClifAnalysisConfig());
+		assertTrue(publisher.isMovingPercentiles());
+		assertFalse(publisher.isLazyCharts());
+		assertEquals(4, publisher.getChartParallelism());
+		assertEquals(1000, publisher.getScatterDensityThreshold());
+		assertEquals(1, publisher.getAnalysisConfig().getParallelism());
 	}
 }
@@ -0,0 +1,111 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins;
+
+import java.io.File;
+import java.util.Arrays;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ow2.clif.jenkins.chart.ChartConfiguration;
+import org.ow2.clif.jenkins.model.ClifReport;
+import org.ow2.clif.jenkins.model.Measure;
+import org.ow2.clif.jenkins.parser.clif.ClifParser;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ClifReportCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void cachedReportIsReused() throws Exception {
+		File reportDir = folder.newFolder("report");
+		FileUtils.copyDirectory(new File("src/test/resources/reports"), reportDir);
+		File chartDir = folder.newFolder("charts");
+		File cacheDir = new File(folder.getRoot(), "cache");
+		ClifParser parser = new ClifParser(reportDir.getAbsolutePath(), chartDir);
+		parser.setChartConfiguration(new ChartConfiguration(600, 1200, 15, 50, 2));
+		parser.setGenerateCharts(false);
+		ClifReport report = parser.parse(System.out);
+		FileUtils.writeStringToFile(new File(chartDir, "clif/chart.png"), "chart", "UTF-8");
+
+		ClifReportCache cache = new ClifReportCache(cacheDir, reportDir, "1.0", "settings");
+		assertNull(cache.load(chartDir));
+		cache.store(report, chartDir);
+
+		File otherChartDir = folder.newFolder("otherCharts");
+		ClifReport cached = new ClifReportCache(cacheDir, reportDir, "1.0", "settings").load(otherChartDir);
+		assertNotNull(cached);
+		Measure expected = report.getTestplan("random").getAggregatedMeasures().get(0);
+		Measure measure = cached.getTestplan("random").getAggregatedMeasures().get(0);
+		assertEquals(expected.getName(), measure.getName());
+		assertEquals(expected.getSize(), measure.getSize());
+		assertEquals(expected.getMedian(), measure.getMedian());
+		assertEquals("chart", FileUtils.readFileToString(new File(otherChartDir, "clif/chart.png"), "UTF-8"));
+
+		// the report directory is left as is, so that analyzing it again after a cache miss gives the same report
+		String[] names = reportDir.list();
+		String[] expectedNames = new File("src/test/resources/reports").list();
+		Arrays.sort(names);
+		Arrays.sort(expectedNames);
+		assertArrayEquals(expectedNames, names);
+		ClifReport parsedAgain = parser.parse(System.out);
+		assertEquals(report.getTestplans().size(), parsedAgain.getTestplans().size());
+		assertEquals(expected.getSize(), parsedAgain.getTestplan("random").getAggregatedMeasures().get(0).getSize());
+	}
+
+	@Test
+	public void fingerprintDependsOnVersionSettingsAndFiles() throws Exception {
+		File reportDir = folder.newFolder("report");
+		File file = new File(reportDir, "test.ctp");
+		FileUtils.writeStringToFile(file, "test", "UTF-8");
+
+		String fingerprint = ClifReportCache.computeFingerprint(reportDir, "1.0", "settings");
+		assertEquals(fingerprint, ClifReportCache.computeFingerprint(reportDir, "1.0", "settings"));
+		assertTrue(!fingerprint.equals(ClifReportCache.computeFingerprint(reportDir, "1.0", "other settings")));
+		assertTrue(!fingerprint.equals(ClifReportCache.computeFingerprint(reportDir, "1.1", "settings")));
+
+		FileUtils.writeStringToFile(file, "modified test", "UTF-8");
+		assertTrue(!fingerprint.equals(ClifReportCache.computeFingerprint(reportDir, "1.0", "settings")));
+	}
+
+	@Test
+	public void cacheIsNotUsedWithUnknownPluginVersion() throws Exception {
+		File reportDir = folder.newFolder("report");
+		FileUtils.writeStringToFile(new File(reportDir, "test.ctp"), "test", "UTF-8");
+		File chartDir = folder.newFolder("charts");
+		File cacheDir = new File(folder.getRoot(), "cache");
+
+		new ClifReportCache(cacheDir, reportDir, "1.0", "settings").store(new ClifReport(), chartDir);
+		assertNotNull(new ClifReportCache(cacheDir, reportDir, "1.0", "settings").load(chartDir));
+		ClifReportCache cache = new ClifReportCache(cacheDir, reportDir, null, "settings");
+		assertNull(cache.load(chartDir));
+		cache.store(new ClifReport(), chartDir);
+		assertTrue(!cacheDir.exists());
+	}
+}
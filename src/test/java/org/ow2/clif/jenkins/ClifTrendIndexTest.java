@@ -0,0 +1,178 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.output.NullOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.ow2.clif.jenkins.model.ClifReport;
+import org.ow2.clif.jenkins.model.Measure;
+import org.ow2.clif.jenkins.model.TestPlan;
+import hudson.model.Job;
+import hudson.model.Result;
+import hudson.model.Run;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @author Bruno Dillenseger
+ */
+public class ClifTrendIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void indexFollowsTheBuilds()
+			throws Exception {
+		Job<?, ?> job = mock(Job.class);
+		doReturn(folder.getRoot()).when(job).getRootDir();
+		List<Run<?, ?>> builds = new ArrayList<Run<?, ?>>();
+		doReturn(builds).when(job).getBuilds();
+		Run<?, ?> build1 = mockBuild(job, 1, "login", 10);
+		Run<?, ?> build2 = mockBuild(job, 2, "login\tand\\logout", 20);
+		builds.add(build2);
+		builds.add(build1);
+
+		// built from the completed builds
+		doReturn(true).when(build2).isBuilding();
+		List<ClifTrendIndex.Entry> entries = ClifTrendIndex.getIndex(job).getEntries();
+		assertEquals(1, entries.size());
+		assertEquals(1, entries.get(0).getBuildNumber());
+		assertTrue(new File(folder.getRoot(), ClifTrendIndex.INDEX_FILE).isFile());
+		assertEquals(1, ClifTrendIndex.getIndex(job).getLastBuildNumber());
+
+		// rendered graphs are kept until a build is added
+		ClifTrendIndex.getIndex(job).putGraph("graph", new byte[1]);
+		assertNotNull(ClifTrendIndex.getIndex(job).getGraph("graph"));
+
+		// then read from the index
+		ClifTrendIndex.addBuild(build2);
+		assertNull(ClifTrendIndex.getIndex(job).getGraph("graph"));
+		Job<?, ?> sameJob = mock(Job.class);
+		doReturn(folder.getRoot()).when(sameJob).getRootDir();
+		entries = ClifTrendIndex.getIndex(sameJob).getEntries();
+		verify(sameJob, never()).getBuilds();
+		assertEquals(2, entries.size());
+		ClifTrendIndex.Entry entry = entries.get(1);
+		assertEquals(2, entry.getBuildNumber());
+		assertEquals("#2", entry.getBuildName());
+		assertEquals("plan", entry.getTestPlan());
+		assertEquals("login\tand\\logout", entry.getMeasure().getName());
+		assertEquals(20, entry.getMeasure().getAverage());
+		assertEquals(0.25, entry.getMeasure().getStdDev(), 0);
+		assertEquals(0.2, entry.getMeasure().errorPercent(), 0);
+		assertEquals(1, ClifTrendIndex.getIndex(sameJob).getEntries("plan", "login").size());
+
+		assertEquals(120, entry.getMeasure().getPercentile(99.9));
+		assertEquals(-1, entries.get(0).getMeasure().getPercentile(99.9));
+
+		ClifTrendIndex.removeBuild(build1);
+		entries = ClifTrendIndex.getIndex(sameJob).getEntries();
+		assertEquals(1, entries.size());
+		assertEquals(2, entries.get(0).getBuildNumber());
+	}
+
+	@Test
+	public void indexingAJobDoesNotBlockTheOtherJobs()
+			throws Exception {
+		final CountDownLatch indexing = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final Job<?, ?> slowJob = mock(Job.class);
+		doReturn(folder.newFolder()).when(slowJob).getRootDir();
+		doAnswer(new Answer<List<Run<?, ?>>>() {
+			public List<Run<?, ?>> answer(InvocationOnMock invocation)
+					throws InterruptedException {
+				indexing.countDown();
+				release.await();
+				return new ArrayList<Run<?, ?>>();
+			}
+		}).when(slowJob).getBuilds();
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				ClifTrendIndex.getIndex(slowJob);
+			}
+		};
+		thread.start();
+		try {
+			assertTrue(indexing.await(10, TimeUnit.SECONDS));
+			Job<?, ?> job = mock(Job.class);
+			doReturn(folder.newFolder()).when(job).getRootDir();
+			List<Run<?, ?>> builds = new ArrayList<Run<?, ?>>();
+			builds.add(mockBuild(job, 1, "login", 10));
+			doReturn(builds).when(job).getBuilds();
+			assertEquals(1, ClifTrendIndex.getIndex(job).getEntries().size());
+		}
+		finally {
+			release.countDown();
+			thread.join();
+		}
+	}
+
+	@Test
+	public void incompleteLinesAreIgnored() {
+		assertNull(ClifTrendIndex.Entry.fromLine("3\t#3\tSUCCESS\tplan\tlogin\t8\t2\t10\t9\t1\t100\t0.25\t1.5\tfalse"));
+		ClifTrendIndex.Entry entry =
+				ClifTrendIndex.Entry.fromLine("3\t#3\tSUCCESS\tplan\tlogin\t8\t2\t10\t9\t1\t100\t0.25\t1.5\tfalse\t");
+		assertEquals(3, entry.getBuildNumber());
+		assertEquals(9, entry.getMeasure().getMedian());
+		assertEquals(0, entry.getMeasure().getPercentileRanks().length);
+	}
+
+	private static Run<?, ?> mockBuild(Job<?, ?> job, int number, String action, long average) {
+		Measure measure = new Measure(action, 8, average, average, 1, 100, 0.25, 1.5, 2);
+		if (number > 1) {
+			measure.setPercentiles(new double[]{90, 99.9}, new long[]{90, 120});
+		}
+		TestPlan testPlan = new TestPlan("plan", new Date());
+		testPlan.addAggregatedMeasure(measure);
+		ClifReport report = new ClifReport();
+		report.addTestplan(testPlan);
+
+		Run<?, ?> build = mock(Run.class);
+		doReturn(job).when(build).getParent();
+		doReturn(number).when(build).getNumber();
+		doReturn("#" + number).when(build).getDisplayName();
+		doReturn(Result.SUCCESS).when(build).getResult();
+		ClifBuildAction buildAction = new ClifBuildAction(null, report, null, new PrintStream(new NullOutputStream()));
+		doReturn(buildAction).when(build).getAction(ClifBuildAction.class);
+		return build;
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.chart;
+
+import org.jfree.data.general.DatasetUtilities;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Bruno Dillenseger
+ */
+public class ArrayXYDatasetTest {
+
+	@Test
+	public void seriesAreReadFromTheArrays() {
+		double[] x = {1, 2, 3, 0};
+		ArrayXYDataset dataset = new ArrayXYDataset();
+		dataset.addSeries("a", x, new double[]{10, 30, 20, 0}, 3);
+		dataset.addSeries("b", x, new double[]{5, 6, 7}, 3);
+
+		assertEquals(2, dataset.getSeriesCount());
+		assertEquals("b", dataset.getSeriesKey(1));
+		assertEquals(3, dataset.getItemCount(0));
+		assertEquals(2, dataset.getXValue(0, 1), 0);
+		assertEquals(30, dataset.getY(0, 1).doubleValue(), 0);
+		// the last value of the array is not part of the series
+		assertEquals(1, DatasetUtilities.findDomainBounds(dataset).getLowerBound(), 0);
+		assertEquals(30, DatasetUtilities.findRangeBounds(dataset).getUpperBound(), 0);
+		assertEquals(5, DatasetUtilities.findRangeBounds(dataset).getLowerBound(), 0);
+	}
+}
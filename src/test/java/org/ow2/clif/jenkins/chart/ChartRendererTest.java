@@ -0,0 +1,264 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.chart;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+import org.jfree.chart.JFreeChart;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Bruno Dillenseger
+ */
+public class ChartRendererTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void allChartsAreRenderedBeforeFinishing()
+			throws Exception {
+		AtomicInteger rendered = new AtomicInteger();
+		ChartRenderer renderer = new ChartRenderer(new File("target"), 4);
+		for (int i = 0; i < 100; i++) {
+			renderer.render(new CountingChart(rendered, false));
+		}
+		renderer.finish();
+		assertEquals(100, rendered.get());
+	}
+
+	@Test
+	public void renderingFailuresAreRethrown()
+			throws Exception {
+		AtomicInteger rendered = new AtomicInteger();
+		ChartRenderer renderer = new ChartRenderer(new File("target"), 2);
+		renderer.render(new CountingChart(rendered, false));
+		renderer.render(new CountingChart(rendered, true));
+		try {
+			renderer.finish();
+			fail("rendering failure not rethrown");
+		}
+		catch (IllegalStateException e) {
+			assertEquals("rendering failed", e.getMessage());
+		}
+	}
+
+	@Test
+	public void chartsAreRenderedInParallelInAFreshDirectory()
+			throws Exception {
+		for (int run = 0; run < 10; run++) {
+			File rootDir = folder.newFolder();
+			// the first charts are saved at the same time by all the workers
+			CyclicBarrier start = new CyclicBarrier(4);
+			ChartRenderer renderer = new ChartRenderer(rootDir, 4, true);
+			for (int i = 0; i < 50; i++) {
+				MovingStatChart chart = new SynchronizedChart("event" + i, i < 4 ? start : null);
+				chart.addData(0, i);
+				renderer.render(chart);
+			}
+			renderer.finish();
+			assertEquals(50, new File(rootDir, "clif").list().length);
+		}
+	}
+
+	@Test
+	public void lazyChartsAreRenderedOnDemand()
+			throws Exception {
+		File rootDir = folder.getRoot();
+		MovingStatChart chart =
+				new MovingStatChart("testplan", "blade", "event", new ChartConfiguration(300, 400, 15, 50, 2));
+		for (int i = 0; i < 1000; i++) {
+			chart.addData(i * 10, i % 100);
+		}
+		ChartRenderer renderer = new ChartRenderer(rootDir, 1, true);
+		renderer.render(chart);
+		renderer.finish();
+
+		File chartDir = new File(rootDir, "clif");
+		String id = new ChartId("movingStat", "testplan", "blade", "event").getId();
+		assertTrue(new File(chartDir, id + AbstractChart.DATA_FILE_EXTENSION).isFile());
+		assertFalse(new File(chartDir, id + ".png").exists());
+
+		// chart built from the request parameters only
+		MovingStatChart requested = new MovingStatChart("testplan", "blade", "event", null);
+		File imageFile = requested.getRenderedImageFile(rootDir);
+		assertNotNull(imageFile);
+		assertEquals(id + ".png", imageFile.getName());
+		assertTrue(imageFile.length() > 0);
+		assertFalse(new File(chartDir, id + AbstractChart.DATA_FILE_EXTENSION).exists());
+		assertEquals(imageFile, requested.getRenderedImageFile(rootDir));
+
+		assertNull(new MovingStatChart("testplan", "blade", "other", null).getRenderedImageFile(rootDir));
+	}
+
+	@Test
+	public void lazyChartsAreRenderedAsEagerCharts()
+			throws Exception {
+		ChartConfiguration configuration = new ChartConfiguration(300, 400, 15, 50, 2);
+		configuration.setMovingPercentiles(true);
+		configuration.setMovingPercentileRanks(90, 99.9);
+		Random random = new Random(42);
+		double[] values = new double[500];
+		CallChart callChart = new CallChart("testplan", "blade", "event", configuration);
+		callChart.setScatterPlot(true);
+		MovingStatChart movingStatChart = new MovingStatChart("testplan", "blade", "event", configuration);
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextInt(1000);
+			callChart.addData(i * 10, values[i]);
+			movingStatChart.addData(i * 10, values[i]);
+		}
+		FixedSliceNumberDistributionChart numberChart =
+				new FixedSliceNumberDistributionChart("testplan", "blade", "event", configuration);
+		numberChart.addData(values);
+		FixedSliceSizeDistributionChart sizeChart =
+				new FixedSliceSizeDistributionChart("testplan", "blade", "event", configuration);
+		sizeChart.addData(values, 0, 999);
+		QuantileDistributionChart quantileChart =
+				new QuantileDistributionChart("testplan", "blade", "event", configuration);
+		quantileChart.addData(values);
+
+		assertRenderedAsEagerChart(callChart, new CallChart("testplan", "blade", "event", null));
+		assertRenderedAsEagerChart(movingStatChart, new MovingStatChart("testplan", "blade", "event", null));
+		assertRenderedAsEagerChart(numberChart,
+		                           new FixedSliceNumberDistributionChart("testplan", "blade", "event", null));
+		assertRenderedAsEagerChart(sizeChart,
+		                           new FixedSliceSizeDistributionChart("testplan", "blade", "event", null));
+		assertRenderedAsEagerChart(quantileChart, new QuantileDistributionChart("testplan", "blade", "event", null));
+	}
+
+	@Test
+	public void serializedObjectsAreNotRead()
+			throws Exception {
+		File rootDir = folder.getRoot();
+		File chartDir = new File(rootDir, "clif");
+		assertTrue(chartDir.mkdirs());
+		String id = new ChartId("Call", "testplan", "blade", "event").getId();
+		ObjectOutputStream out = new ObjectOutputStream(
+				new GZIPOutputStream(new FileOutputStream(new File(chartDir, id + AbstractChart.DATA_FILE_EXTENSION))));
+		out.writeObject(new ChartConfiguration(300, 400, 15, 50, 2));
+		out.close();
+
+		try {
+			new CallChart("testplan", "blade", "event", null).getRenderedImageFile(rootDir);
+			fail("invalid chart data read");
+		}
+		catch (IOException e) {
+			assertFalse(new File(chartDir, id + ".png").exists());
+		}
+	}
+
+	private void assertRenderedAsEagerChart(AbstractChart chart, AbstractChart requested)
+			throws Exception {
+		File eagerDir = folder.newFolder();
+		File lazyDir = folder.newFolder();
+		chart.createChart(eagerDir);
+		chart.saveData(lazyDir);
+
+		File imageFile = requested.getRenderedImageFile(lazyDir);
+		assertNotNull(imageFile);
+		byte[] expected = Files.readAllBytes(new File(new File(eagerDir, "clif"), imageFile.getName()).toPath());
+		assertTrue("Lazy " + imageFile.getName() + " differs from the eager one",
+		           Arrays.equals(expected, Files.readAllBytes(imageFile.toPath())));
+	}
+
+	/**
+	 * Chart waiting for other charts before being saved
+	 */
+	private static class SynchronizedChart
+			extends MovingStatChart {
+
+		private final CyclicBarrier barrier;
+
+		SynchronizedChart(String event, CyclicBarrier barrier) {
+			super("testplan", "blade", event, new ChartConfiguration(300, 400, 15, 50, 2));
+			this.barrier = barrier;
+		}
+
+		@Override
+		public void saveData(File rootDir) {
+			if (barrier != null) {
+				try {
+					barrier.await(10, TimeUnit.SECONDS);
+				}
+				catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			super.saveData(rootDir);
+		}
+	}
+
+	/**
+	 * Chart counting its renderings instead of saving a PNG file
+	 */
+	private static class CountingChart
+			extends AbstractChart {
+
+		private final AtomicInteger rendered;
+
+		private final boolean failing;
+
+		CountingChart(AtomicInteger rendered, boolean failing) {
+			super("counting", "blade", "testplan", "event", null);
+			this.rendered = rendered;
+			this.failing = failing;
+		}
+
+		@Override
+		public void createChart(File rootDir) {
+			if (failing) {
+				throw new IllegalStateException("rendering failed");
+			}
+			rendered.incrementAndGet();
+		}
+
+		@Override
+		protected JFreeChart createChart() {
+			return null;
+		}
+
+		@Override
+		protected void writeData(DataOutput out) {
+		}
+
+		@Override
+		protected void readData(DataInput in) {
+		}
+	}
+}
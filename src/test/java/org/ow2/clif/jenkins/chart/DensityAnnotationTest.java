@@ -0,0 +1,67 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.chart;
+
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.XYPlot;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Bruno Dillenseger
+ */
+public class DensityAnnotationTest {
+
+	@Test
+	public void pointsAreCountedInTheirCell() {
+		double[] x = {0, 10, 10, 5, 20};
+		double[] y = {0, 10, 10, 5, 0};
+		DensityAnnotation annotation = new DensityAnnotation(x, y, x.length);
+		// top left, top right, bottom left, bottom right; the last point is out of the grid
+		assertArrayEquals(new int[]{0, 2, 1, 1}, annotation.countPoints(2, 2, 0, 10, 0, 10));
+	}
+
+	@Test
+	public void scatterPlotsAboveTheThresholdShowTheirDensity() {
+		ChartConfiguration configuration = new ChartConfiguration(600, 1200, 15, 50, 5);
+		configuration.setScatterDensityThreshold(2);
+		CallChart chart = new CallChart("testplan", "0", "action", configuration);
+		chart.setData(new double[]{1, 2, 3}, new double[]{10, 20, 30});
+		assertFalse(chart.isDensityPlot());
+
+		chart.setScatterPlot(true);
+		assertTrue(chart.isDensityPlot());
+		JFreeChart jfreeChart = chart.createChart();
+		XYPlot plot = (XYPlot) jfreeChart.getPlot();
+		assertEquals(1, plot.getAnnotations().size());
+		assertEquals(0, plot.getDomainAxis().getLowerBound(), 0);
+		assertTrue(plot.getRangeAxis().getUpperBound() > 30);
+
+		configuration.setScatterDensityThreshold(3);
+		assertFalse(chart.isDensityPlot());
+		configuration.setScatterDensityThreshold(0);
+		assertFalse(chart.isDensityPlot());
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.chart;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Bruno Dillenseger
+ */
+public class SliceDatasetTest {
+
+	@Test
+	public void valuesAreCountedInTheirSlice() {
+		SliceDataset dataset = new SliceDataset("event");
+		dataset.setSlices(10, 20, 3);
+		dataset.add(10, 1);
+		dataset.add(29, 1);
+		// a lower bound belongs to its slice, and the last slice holds its upper bound
+		dataset.add(30, 2);
+		dataset.add(70, 1);
+		dataset.add(5, 1);
+
+		assertEquals(3, dataset.getItemCount(0));
+		assertEquals(3, dataset.getYValue(0, 0), 0);
+		assertEquals(2, dataset.getYValue(0, 1), 0);
+		assertEquals(1, dataset.getYValue(0, 2), 0);
+		assertEquals(30, dataset.getStartXValue(0, 1), 0);
+		assertEquals(50, dataset.getEndXValue(0, 1), 0);
+		assertEquals(40, dataset.getX(0, 1).doubleValue(), 0);
+	}
+}
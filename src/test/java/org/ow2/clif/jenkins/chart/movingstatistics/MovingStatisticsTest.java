@@ -0,0 +1,195 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.chart.movingstatistics;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Bruno Dillenseger
+ */
+public class MovingStatisticsTest {
+
+	private static final double[] X = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+
+	private static final double[] Y = {1, 3, 5, 2, 2, 5, 6, 1, 4, 3};
+
+	@Test
+	public void testMovingMin() {
+		double[] x = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 50, 100};
+		double[] y = {1, 3, 5, 2, 2, 5, 6, 1, 4, 3, 3, 3};
+		MovingStatistics statistics = new MovingStatistics(3, 0);
+		statistics.calculate(x, y, x.length);
+
+		assertEquals("Bad size", 6, statistics.size());
+		double[] expectedMins = {1, 2, 2, 1, 3, 3};
+		for (int i = 0; i < expectedMins.length; i++) {
+			assertEquals("Bad min at index " + i, expectedMins[i], statistics.getMin(ascending(statistics, i)), 0);
+		}
+	}
+
+	@Test
+	public void testMovingMax() {
+		MovingStatistics statistics = calculate();
+
+		double[] expectedMaxs = {5, 6, 4};
+		for (int i = 0; i < expectedMaxs.length; i++) {
+			assertEquals("Bad max at index " + i, expectedMaxs[i], statistics.getMax(ascending(statistics, i)), 0);
+		}
+	}
+
+	@Test
+	public void testMovingAverage() {
+		MovingStatistics statistics = calculate();
+
+		double[] expectedAverages = {10d / 3, 13d / 3, 8d / 3};
+		for (int i = 0; i < expectedAverages.length; i++) {
+			assertEquals("Bad average at index " + i, expectedAverages[i],
+			             statistics.getAverage(ascending(statistics, i)), 0);
+		}
+	}
+
+	@Test
+	public void testMovingMedian() {
+		MovingStatistics statistics = calculate();
+
+		double[] expectedMedians = {3, 5, 3};
+		for (int i = 0; i < expectedMedians.length; i++) {
+			assertEquals("Bad median at index " + i, expectedMedians[i],
+			             statistics.getMedian(ascending(statistics, i)), 0);
+		}
+	}
+
+	@Test
+	public void testMovingStdDev() {
+		MovingStatistics statistics = calculate();
+
+		double[] expectedStdDevs = {Math.sqrt(7d / 3), Math.sqrt(13d / 3), Math.sqrt(7d / 3)};
+		for (int i = 0; i < expectedStdDevs.length; i++) {
+			assertEquals("Bad standard deviation at index " + i, expectedStdDevs[i],
+			             statistics.getStandardDeviation(ascending(statistics, i)), 1e-9);
+		}
+	}
+
+	@Test
+	public void testMovingThroughput() {
+		MovingStatistics statistics = calculate();
+
+		for (int i = 0; i < statistics.size(); i++) {
+			assertEquals("Bad throughput at index " + i, 1000, statistics.getThroughput(i), 0);
+		}
+	}
+
+	@Test
+	public void testPeriodsEndAtTheLastPoint() {
+		MovingStatistics statistics = calculate();
+
+		double[] expectedX = {2.5, 5.5, 8.5};
+		for (int i = 0; i < expectedX.length; i++) {
+			assertEquals("Bad x at index " + i, expectedX[i], statistics.getX(ascending(statistics, i)), 0);
+		}
+	}
+
+	@Test
+	public void testUnorderedPointsAreSortedByX() {
+		double[] x = {4, 1, 10, 7, 2, 9, 5, 3, 8, 6};
+		double[] y = new double[x.length];
+		for (int i = 0; i < x.length; i++) {
+			y[i] = Y[(int) x[i] - 1];
+		}
+		MovingStatistics.sortByX(x, y, x.length);
+		MovingStatistics statistics = new MovingStatistics(3, 3);
+		statistics.calculate(x, y, x.length);
+
+		MovingStatistics expected = calculate();
+		assertEquals(expected.size(), statistics.size());
+		for (int i = 0; i < statistics.size(); i++) {
+			assertEquals(expected.getAverage(i), statistics.getAverage(i), 0);
+			assertEquals(expected.getMedian(i), statistics.getMedian(i), 0);
+		}
+	}
+
+	@Test
+	public void testNoPoint() {
+		MovingStatistics statistics = new MovingStatistics(3, 0);
+		statistics.calculate(new double[0], new double[0], 0);
+
+		assertEquals(0, statistics.size());
+	}
+
+	@Test
+	public void percentilesAreNearestRanks() {
+		double[] x = new double[100];
+		double[] y = new double[100];
+		for (int i = 0; i < 100; i++) {
+			x[i] = i;
+			// values 1 to 100, in a shuffled order
+			y[i] = (i * 37) % 100 + 1;
+		}
+		MovingStatistics statistics = new MovingStatistics(1000, 0);
+		statistics.setPercentiles(90, 95, 99, 100);
+		statistics.calculate(x, y, 100);
+
+		assertEquals(1, statistics.size());
+		assertEquals(50, statistics.getMedian(0), 0);
+		assertEquals(90, statistics.getPercentile(0, 0), 0);
+		assertEquals(95, statistics.getPercentile(1, 0), 0);
+		assertEquals(99, statistics.getPercentile(2, 0), 0);
+		assertEquals(100, statistics.getPercentile(3, 0), 0);
+	}
+
+	@Test
+	public void decimalPercentilesAreNearestRanks() {
+		double[] x = new double[1000];
+		double[] y = new double[1000];
+		for (int i = 0; i < 1000; i++) {
+			x[i] = i;
+			y[i] = 1000 - i;
+		}
+		MovingStatistics statistics = new MovingStatistics(10000, 0);
+		statistics.setPercentiles(99.9, 99.95);
+		statistics.calculate(x, y, 1000);
+
+		assertEquals(1, statistics.size());
+		assertEquals(999, statistics.getPercentile(0, 0), 0);
+		assertEquals(1000, statistics.getPercentile(1, 0), 0);
+	}
+
+	/**
+	 * Moving statistics of the 10 points of {@link #X} and {@link #Y},
+	 * with a period of 3 and an initial skip period of 3.
+	 */
+	private static MovingStatistics calculate() {
+		MovingStatistics statistics = new MovingStatistics(3, 3);
+		statistics.calculate(X, Y, X.length);
+		assertEquals("Bad size", 3, statistics.size());
+		return statistics;
+	}
+
+	/**
+	 * Statistical periods are ordered by descending x.
+	 *
+	 * @return index of the period of the given rank, by ascending x
+	 */
+	private static int ascending(MovingStatistics statistics, int rank) {
+		return statistics.size() - 1 - rank;
+	}
+}
@@ -19,38 +19,33 @@
  * Contact: clif@ow2.org
  */
 package org.ow2.clif.jenkins.chart.movingstatistics;
-
-import org.jfree.data.xy.XYSeries;
+import java.util.Random;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
 
 /**
- * Calculate the moving average of time series data.
+ * @author Bruno Dillenseger
  */
-public class MovingAverageStat extends AbstractMovingStat {
-
-	double sum = 0.0;
-	int n = 0;
-
-
-	@Override
-	public void resetMovingStat() {
-		this.sum = 0.0;
-		this.n = 0;
-	}
-
-	@Override
-	protected void calculateMovingStatInPeriod(double xx, double yy) {
-		sum = sum + yy;
-		n = n + 1;
-	}
-
-	@Override
-	protected void addMovingStatForPeriod(XYSeries result, double x) {
-		if (n > 0) {
-			result.add(x, sum / n);
-		}
-		else {
-			result.add(x, null);
+public class WindowValuesTest {
+
+	@Test
+	public void selectReturnsTheSortedValue() {
+		Random random = new Random(42);
+		WindowValues values = new WindowValues();
+		for (int size = 1; size < 200; size += 7) {
+			values.clear();
+			double[] expected = new double[size];
+			for (int i = 0; i < size; i++) {
+				// few distinct values, as integer response times
+				expected[i] = random.nextInt(10);
+				values.add(expected[i]);
+			}
+			Arrays.sort(expected);
+			for (int k = 0; k < size; k++) {
+				assertEquals("Bad value of rank " + k + " among " + size, expected[k], values.select(k), 0);
+			}
 		}
 	}
-
 }
@@ -0,0 +1,105 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.model;
+import java.util.Random;
+import org.apache.commons.math.stat.descriptive.DescriptiveStatistics;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Bruno Dillenseger
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void testSmallValuesAreExact() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		DescriptiveStatistics stats = new DescriptiveStatistics();
+		for (int i = 0; i < 1000; i++) {
+			int value = (i * 37) % 128;
+			histogram.add(value);
+			stats.addValue(value);
+		}
+		assertEquals(stats.getN(), histogram.getN());
+		assertEquals(stats.getMean(), histogram.getMean(), 1e-9);
+		assertEquals(stats.getStandardDeviation(), histogram.getStandardDeviation(), 1e-9);
+		assertEquals(stats.getMin(), histogram.getMin(), 0);
+		assertEquals(stats.getMax(), histogram.getMax(), 0);
+		for (int p = 5; p <= 100; p += 5) {
+			assertEquals(stats.getPercentile(p), histogram.getPercentile(p), 0);
+		}
+	}
+
+	@Test
+	public void testPercentileRelativeError() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		DescriptiveStatistics stats = new DescriptiveStatistics();
+		Random random = new Random(0);
+		for (int i = 0; i < 100000; i++) {
+			int value = (int) Math.exp(random.nextDouble() * 15);
+			histogram.add(value);
+			stats.addValue(value);
+		}
+		assertEquals(stats.getMin(), histogram.getMin(), 0);
+		assertEquals(stats.getMax(), histogram.getMax(), 0);
+		for (double p : new double[]{1, 50, 90, 95, 99, 99.9}) {
+			double exact = stats.getPercentile(p);
+			assertTrue("percentile " + p, Math.abs(histogram.getPercentile(p) - exact) <= exact / LatencyHistogram.SUB_BUCKETS);
+		}
+		// values lower than 2^22: at most 15 power of two ranges above the linear buckets
+		assertTrue(histogram.getBucketNumber() <= LatencyHistogram.LINEAR_BUCKETS + 16 * LatencyHistogram.SUB_BUCKETS);
+	}
+
+	@Test
+	public void testMerge() {
+		LatencyHistogram histogram1 = new LatencyHistogram();
+		LatencyHistogram histogram2 = new LatencyHistogram();
+		LatencyHistogram all = new LatencyHistogram();
+		for (int i = 0; i < 5000; i++) {
+			histogram1.add(i);
+			all.add(i);
+			histogram2.add(i * 3 + 1);
+			all.add(i * 3 + 1);
+		}
+		histogram1.merge(histogram2);
+		histogram1.merge(new LatencyHistogram());
+		assertEquals(all.getN(), histogram1.getN());
+		assertEquals(all.getMean(), histogram1.getMean(), 1e-6);
+		assertEquals(all.getStandardDeviation(), histogram1.getStandardDeviation(), 1e-6);
+		assertEquals(all.getMin(), histogram1.getMin(), 0);
+		assertEquals(all.getMax(), histogram1.getMax(), 0);
+		for (int p = 5; p <= 100; p += 5) {
+			assertEquals(all.getPercentile(p), histogram1.getPercentile(p), 0);
+		}
+	}
+
+	@Test
+	public void testEmptyAndSingleValue() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getN());
+		assertTrue(Double.isNaN(histogram.getMean()));
+		assertTrue(Double.isNaN(histogram.getPercentile(50)));
+		histogram.add(1234);
+		assertEquals(1234, histogram.getPercentile(50), 0);
+		assertEquals(0, histogram.getStandardDeviation(), 0);
+	}
+}
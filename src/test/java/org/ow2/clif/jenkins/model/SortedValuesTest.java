@@ -0,0 +1,56 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.model;
+
+import java.util.Random;
+import org.apache.commons.math.stat.descriptive.rank.Percentile;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Bruno Dillenseger
+ */
+public class SortedValuesTest {
+
+	@Test
+	public void percentilesAreTheCommonsMathOnes() {
+		Random random = new Random(7);
+		for (int size : new int[]{1, 2, 3, 10, 1001}) {
+			double[] values = new double[size];
+			for (int i = 0; i < size; i++) {
+				values[i] = random.nextInt(500);
+			}
+			Percentile percentile = new Percentile();
+			double[] expected = new double[100];
+			for (int p = 1; p <= 100; p++) {
+				expected[p - 1] = percentile.evaluate(values, p);
+			}
+			SortedValues sorted = new SortedValues(values);
+			for (int p = 1; p <= 100; p++) {
+				assertEquals("size " + size + ", percentile " + p, expected[p - 1], sorted.getPercentile(p), 0);
+			}
+			assertEquals(percentile.evaluate(values, 12.5), sorted.getPercentile(12.5), 0);
+		}
+		assertTrue(Double.isNaN(new SortedValues(new double[0]).getPercentile(50)));
+	}
+}
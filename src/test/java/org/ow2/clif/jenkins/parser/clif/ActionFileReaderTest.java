@@ -0,0 +1,145 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.parser.clif;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ActionFileReaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static final String ACTION_FILE =
+			"# date, session id, action type, iteration, success, duration, comment, result\r\n"
+			+ "413,5,58ms dummy action,0,true,95,successful dummy request,null\r\n"
+			+ "\r\n"
+			+ "1500,7,67ms dummy action,3,false,111,failed dummy request,error, code 500\r\n"
+			+ "2000,5,58ms dummy action,1,TRUE,-1,successful dummy request,null";
+
+	@Test
+	public void readEvents() throws Exception {
+		ActionFileReader reader = new ActionFileReader(createFile(ACTION_FILE));
+		try {
+			checkEvents(reader);
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void readEventsAcrossRegions() throws Exception {
+		// regions smaller than the file, but larger than any line
+		ActionFileReader reader = new ActionFileReader(createFile(ACTION_FILE), 100);
+		try {
+			checkEvents(reader);
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void readLinesLongerThanRegions() throws Exception {
+		ActionFileReader reader = new ActionFileReader(createFile(ACTION_FILE), 16);
+		try {
+			checkEvents(reader);
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void readEmptyFile() throws Exception {
+		ActionFileReader reader = new ActionFileReader(createFile(""));
+		try {
+			assertFalse(reader.next());
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void readMalformedEvent() throws Exception {
+		ActionFileReader reader = new ActionFileReader(createFile("413,5,action,0,true,abc,comment,result\n"));
+		try {
+			reader.next();
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	private void checkEvents(ActionFileReader reader) throws IOException {
+		assertTrue(reader.next());
+		assertEquals(413, reader.getDate());
+		assertEquals(5, reader.getSessionId());
+		assertEquals("58ms dummy action", reader.getActionType());
+		assertEquals(0, reader.getIteration());
+		assertTrue(reader.isSuccess());
+		assertEquals(95, reader.getDuration());
+		assertEquals("successful dummy request", reader.getComment());
+		assertEquals("null", reader.getResult());
+		String actionType = reader.getActionType();
+
+		assertTrue(reader.next());
+		assertEquals(1500, reader.getDate());
+		assertEquals("67ms dummy action", reader.getActionType());
+		assertEquals(3, reader.getIteration());
+		assertFalse(reader.isSuccess());
+		assertEquals(111, reader.getDuration());
+		assertEquals("error, code 500", reader.getResult());
+
+		assertTrue(reader.next());
+		assertEquals(2000, reader.getDate());
+		assertTrue(reader.isSuccess());
+		assertEquals(-1, reader.getDuration());
+		assertEquals("null", reader.getResult());
+		// decoded values are shared between events
+		assertSame(actionType, reader.getActionType());
+
+		assertFalse(reader.next());
+	}
+
+	private File createFile(String content) throws IOException {
+		File file = folder.newFile("action");
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		}
+		finally {
+			out.close();
+		}
+		return file;
+	}
+}
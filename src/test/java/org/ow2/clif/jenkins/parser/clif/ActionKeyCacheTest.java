@@ -0,0 +1,67 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.parser.clif;
+
+import org.junit.Test;
+import org.ow2.clif.jenkins.parser.clif.ActionKeyCache.ActionKey;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ActionKeyCacheTest {
+
+	@Test
+	public void keysAreCachedByActionTypeAndComment() {
+		ActionKeyCache cache = new ActionKeyCache();
+		ActionKey withComment = cache.put("GET", "home", "GET-home");
+		ActionKey withoutComment = cache.put("GET", null, "GET");
+
+		assertSame(withComment, cache.get("GET", "home"));
+		assertSame(withoutComment, cache.get("GET", null));
+		assertNull(cache.get("POST", "home"));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void cacheIsBounded() {
+		ActionKeyCache cache = new ActionKeyCache(2);
+		cache.put("GET", "a", "GET-a");
+		cache.put("GET", "b", "GET-b");
+		ActionKey key = cache.put("GET", "c", "GET-c");
+
+		assertEquals("GET-c", key.getAction());
+		assertNull(cache.get("GET", "c"));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void clearStatInfosKeepsKeys() {
+		ActionKeyCache cache = new ActionKeyCache();
+		ActionKey key = cache.put("GET", "home", "GET-home");
+		key.setStatInfo(new ActionStatInfo(new ParsingContext(), null));
+
+		cache.clearStatInfos();
+
+		assertSame(key, cache.get("GET", "home"));
+		assertNull(key.getStatInfo());
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.parser.clif;
+
+import java.util.Date;
+import org.junit.Before;
+import org.junit.Test;
+import org.ow2.clif.jenkins.chart.ChartConfiguration;
+import org.ow2.clif.storage.api.TestDescriptor;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ActionStatInfoTest {
+
+	private ParsingContext context;
+
+	private ChartConfiguration chartConfig;
+
+	@Before
+	public void setUp() {
+		TestDescriptor test = mock(TestDescriptor.class);
+		when(test.getName()).thenReturn("random_2012-03-27_16h56m18");
+		when(test.getDate()).thenReturn(new Date());
+		context = new ParsingContext();
+		context.setTest(test);
+		context.setEventType("action");
+		chartConfig = new ChartConfiguration(600, 1200, 15, 50, 2);
+	}
+
+	@Test
+	public void throughputUsesSharedPeriod() {
+		CallPeriod period = new CallPeriod();
+		ActionStatInfo first = new ActionStatInfo(context, chartConfig, period);
+		ActionStatInfo second = new ActionStatInfo(context, chartConfig, period);
+		first.addStat(1000, 10);
+		first.addStat(2000, 10);
+		second.addStat(5000, 10);
+
+		first.compute();
+		// 2 calls during the 4 seconds of the shared period
+		assertEquals(0.5, first.getThroughput(), 0.0001);
+	}
+
+	@Test
+	public void mergeKeepsValuesErrorsAndPeriod() {
+		ActionStatInfo aggregated = new ActionStatInfo(context, chartConfig, new CallPeriod());
+		ActionStatInfo blade1 = new ActionStatInfo(context, chartConfig, new CallPeriod());
+		ActionStatInfo blade2 = new ActionStatInfo(context, chartConfig, new CallPeriod());
+		blade1.addStat(0, 10);
+		blade1.addStat(1000, 20);
+		blade2.addStat(2000, 30);
+		blade2.incrementErrors();
+
+		aggregated.merge(blade1);
+		aggregated.merge(blade2);
+		aggregated.compute();
+
+		assertEquals(3, aggregated.getN());
+		assertEquals(1, aggregated.getErrors());
+		assertEquals(20, aggregated.getMean(), 0.0001);
+		assertEquals(10, aggregated.getMin(), 0.0001);
+		assertEquals(30, aggregated.getMax(), 0.0001);
+		assertEquals(1.5, aggregated.getThroughput(), 0.0001);
+	}
+
+	@Test
+	public void mergedSamplesAreNotCleanedByTheirOwner() {
+		ActionStatInfo aggregated = new ActionStatInfo(context, chartConfig, new CallPeriod());
+		ParsingContext cleanupContext = new ParsingContext(context);
+		cleanupContext.setDataCleanup(true);
+		cleanupContext.setKeepFactor(2);
+		cleanupContext.setKeepPercentage(50);
+		ActionStatInfo blade = new ActionStatInfo(cleanupContext, chartConfig, new CallPeriod());
+		for (int i = 0; i < 99; i++) {
+			blade.addStat(i, 10 + i % 2);
+		}
+		blade.addStat(100, 1000);
+
+		aggregated.merge(blade);
+		blade.compute();
+		aggregated.compute();
+
+		// the outlier is removed from the blade statistics only
+		assertEquals(11, blade.getMax(), 0.0001);
+		assertEquals(100, aggregated.getN());
+		assertEquals(1000, aggregated.getMax(), 0.0001);
+	}
+}
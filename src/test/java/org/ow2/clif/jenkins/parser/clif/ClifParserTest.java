@@ -20,12 +20,20 @@
  */
 package org.ow2.clif.jenkins.parser.clif;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
 import java.util.Date;
 import org.junit.Test;
 import org.ow2.clif.jenkins.chart.ChartConfiguration;
 import org.ow2.clif.jenkins.model.ClifReport;
+import org.ow2.clif.jenkins.model.Measure;
 import org.ow2.clif.jenkins.model.TestPlan;
+import org.ow2.clif.storage.api.BladeEvent;
+import org.ow2.clif.supervisor.api.ClifException;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.anyOf;
 import static org.hamcrest.Matchers.contains;
@@ -33,7 +41,9 @@ import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Created by IntelliJ IDEA.
@@ -66,6 +76,8 @@ public class ClifParserTest {
 
 		TestPlan testPlanRead = report.getTestplan("random");
 		assertThat(testPlanRead.getAggregatedMeasures(), hasSize(1));
+		Measure measure = testPlanRead.getAggregatedMeasures().get(0);
+		assertEquals(measure.getSize(), testPlanRead.getAggregatedHistogram(measure.getName()).getN());
 		assertThat(testPlanRead.getAlarms(), anyOf(nullValue(),empty()));
 		assertThat(testPlanRead.getInjectors(), hasSize(1));
 		assertThat(testPlanRead.getProbes(), anyOf(nullValue(),empty()));
@@ -74,4 +86,182 @@ public class ClifParserTest {
 		start += System.currentTimeMillis();
 		System.out.println(start);
 	}
+	@Test
+	public void testParseWithSmallEventWindow() throws Exception {
+		File reportDir = new File("src/test/resources/reports");
+		File buildDir = new File("target/clif");
+
+		Measure expected = parseAggregatedMeasure(new ClifParser(reportDir.getAbsolutePath(),
+		                                                         buildDir.getAbsoluteFile()));
+		ClifParser parser = new ClifParser(reportDir.getAbsolutePath(), buildDir.getAbsoluteFile());
+		// a date filter makes the parser read events through the storage API instead of the action file
+		parser.addDateFilter(0, Long.MAX_VALUE);
+		parser.setEventWindowSize(7);
+		Measure measure = parseAggregatedMeasure(parser);
+
+		assertEquals(expected.getSize(), measure.getSize());
+		assertEquals(expected.getAverage(), measure.getAverage());
+		assertEquals(expected.getMedian(), measure.getMedian());
+		assertEquals(expected.getMin(), measure.getMin());
+		assertEquals(expected.getMax(), measure.getMax());
+		assertEquals(expected.getStdDev(), measure.getStdDev(), 0.0);
+		assertEquals(expected.getThroughput(), measure.getThroughput(), 0.0);
+	}
+
+	@Test
+	public void testParseWithDateFilterAndSmallEventWindow() throws Exception {
+		File reportDir = new File("src/test/resources/reports");
+		File buildDir = new File("target/clif");
+
+		Measure all = parseAggregatedMeasure(new ClifParser(reportDir.getAbsolutePath(), buildDir.getAbsoluteFile()));
+		ClifParser unwindowed = new ClifParser(reportDir.getAbsolutePath(), buildDir.getAbsoluteFile());
+		unwindowed.addDateFilter(10000, 50000);
+		unwindowed.setEventWindowSize(Integer.MAX_VALUE);
+		Measure expected = parseAggregatedMeasure(unwindowed);
+		// windows hold events filtered out, before, inside and after the date range
+		ClifParser parser = new ClifParser(reportDir.getAbsolutePath(), buildDir.getAbsoluteFile());
+		parser.addDateFilter(10000, 50000);
+		parser.setEventWindowSize(500);
+		Measure measure = parseAggregatedMeasure(parser);
+
+		assertTrue(expected.getSize() > 0);
+		assertTrue(expected.getSize() < all.getSize());
+		assertEquals(expected.getSize(), measure.getSize());
+		assertEquals(expected.getAverage(), measure.getAverage());
+		assertEquals(expected.getMedian(), measure.getMedian());
+		assertEquals(expected.getMin(), measure.getMin());
+		assertEquals(expected.getMax(), measure.getMax());
+		assertEquals(expected.getStdDev(), measure.getStdDev(), 0.0);
+		assertEquals(expected.getThroughput(), measure.getThroughput(), 0.0);
+
+		// a storage may return fewer events than the window size before the last window
+		parser = new ClifParser(reportDir.getAbsolutePath(), buildDir.getAbsoluteFile()) {
+			@Override
+			protected BladeEvent[] getEventWindow(String eventType, long offset)
+					throws ClifException {
+				BladeEvent[] events = super.getEventWindow(eventType, offset);
+				return Arrays.copyOf(events, Math.min(events.length, 100));
+			}
+		};
+		parser.addDateFilter(10000, 50000);
+		parser.setEventWindowSize(500);
+		assertEquals(expected.getSize(), parseAggregatedMeasure(parser).getSize());
+	}
+
+	@Test
+	public void testActionFileAndStorageGiveTheSameReport() throws Exception {
+		File reportDir = new File("src/test/resources/reports");
+		File buildDir = new File("target/clif");
+
+		ClifParser fileParser = new ClifParser(reportDir.getAbsolutePath(), buildDir.getAbsoluteFile());
+		fileParser.setChartConfiguration(new ChartConfiguration(600, 1200, 15, 50, 2));
+		fileParser.setGenerateCharts(false);
+		ClifReport fileReport = fileParser.parse(System.out);
+		// a date filter makes the parser read events through the storage API instead of the action file
+		ClifParser storageParser = new ClifParser(reportDir.getAbsolutePath(), buildDir.getAbsoluteFile());
+		storageParser.setChartConfiguration(new ChartConfiguration(600, 1200, 15, 50, 2));
+		storageParser.setGenerateCharts(false);
+		storageParser.addDateFilter(0, Long.MAX_VALUE);
+		ClifReport storageReport = storageParser.parse(System.out);
+
+		assertTrue(Arrays.equals(serialize(fileReport), serialize(storageReport)));
+	}
+
+	@Test
+	public void testEmptyCommentIsNoComment() {
+		ClifParser parser = new ClifParser("", new File("target/clif"));
+		assertEquals("action", parser.resolveAction("action", "").getAction());
+		assertEquals("action", parser.resolveAction("action", null).getAction());
+		assertEquals("action-comment", parser.resolveAction("action", "comment").getAction());
+	}
+
+	@Test
+	public void testParseInSketchMode() throws Exception {
+		File reportDir = new File("src/test/resources/reports");
+		File buildDir = new File("target/clif");
+
+		Measure expected = parseAggregatedMeasure(new ClifParser(reportDir.getAbsolutePath(),
+		                                                         buildDir.getAbsoluteFile()));
+		ClifParser parser = new ClifParser(reportDir.getAbsolutePath(), buildDir.getAbsoluteFile());
+		parser.enableSketchMode();
+		Measure measure = parseAggregatedMeasure(parser);
+
+		assertTrue(measure.isSketch());
+		assertEquals(expected.getSize(), measure.getSize());
+		assertEquals(expected.getAverage(), measure.getAverage());
+		assertEquals(expected.getMin(), measure.getMin());
+		assertEquals(expected.getMax(), measure.getMax());
+		assertEquals(expected.getStdDev(), measure.getStdDev(), 1e-6);
+		assertEquals(expected.getThroughput(), measure.getThroughput(), 0.0);
+		// the median is estimated with a relative error lower than 1/64
+		assertEquals(expected.getMedian(), measure.getMedian(), expected.getMedian() / 64.0 + 1);
+	}
+
+	@Test
+	public void testReportIsSerializable() throws Exception {
+		File reportDir = new File("src/test/resources/reports");
+		File buildDir = new File("target/clif");
+		ClifParser parser = new ClifParser(reportDir.getAbsolutePath(), buildDir.getAbsoluteFile());
+		parser.setChartConfiguration(new ChartConfiguration(600, 1200, 15, 50, 2));
+		parser.setGenerateCharts(false);
+		ClifReport report = parser.parse(System.out);
+
+		// the report is sent back from the build agent by Java serialization
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(report);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		ClifReport copy = (ClifReport) in.readObject();
+		in.close();
+
+		Measure expected = report.getTestplan("random").getAggregatedMeasures().get(0);
+		Measure measure = copy.getTestplan("random").getAggregatedMeasures().get(0);
+		assertEquals(expected.getName(), measure.getName());
+		assertEquals(expected.getSize(), measure.getSize());
+		assertEquals(expected.getAverageFormated(), measure.getAverageFormated());
+		assertThat(copy.getTestplan("random").getInjectors(), hasSize(1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidEventWindowSize() {
+		new ClifParser("", new File("target/clif")).setEventWindowSize(0);
+	}
+
+	@Test
+	public void testParsePercentiles() throws Exception {
+		File reportDir = new File("src/test/resources/reports");
+		File buildDir = new File("target/clif");
+
+		ClifParser parser = new ClifParser(reportDir.getAbsolutePath(), buildDir.getAbsoluteFile());
+		parser.setPercentiles(50, 90, 99.9);
+		Measure measure = parseAggregatedMeasure(parser);
+
+		assertEquals(3, measure.getPercentileValues().length);
+		assertEquals(measure.getMedian(), measure.getPercentile(50));
+		assertTrue(measure.getPercentile(90) >= measure.getMedian());
+		assertTrue(measure.getPercentile(99.9) >= measure.getPercentile(90));
+		assertTrue(measure.getPercentile(99.9) <= measure.getMax());
+		assertEquals(-1, measure.getPercentile(95));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidPercentile() {
+		new ClifParser("", new File("target/clif")).setPercentiles(90, 100);
+	}
+
+	private static byte[] serialize(Object object) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(object);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private Measure parseAggregatedMeasure(ClifParser parser) throws Exception {
+		parser.setChartConfiguration(new ChartConfiguration(600, 1200, 15, 50, 2));
+		parser.setGenerateCharts(false);
+		ClifReport report = parser.parse(System.out);
+		return report.getTestplan("random").getAggregatedMeasures().get(0);
+	}
 }
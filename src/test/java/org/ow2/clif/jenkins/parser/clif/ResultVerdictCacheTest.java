@@ -0,0 +1,56 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.parser.clif;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ResultVerdictCacheTest {
+
+	@Test
+	public void verdictsAreCachedByActionTypeAndResult() {
+		ResultVerdictCache cache = new ResultVerdictCache();
+		cache.put("GET", "200", true);
+		cache.put("GET", "500", false);
+		cache.put("GET", "200", true);
+
+		assertEquals(Boolean.TRUE, cache.get("GET", "200"));
+		assertEquals(Boolean.FALSE, cache.get("GET", "500"));
+		assertNull(cache.get("POST", "200"));
+		assertEquals(2, cache.size());
+
+		cache.clear();
+		assertNull(cache.get("GET", "200"));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void cacheIsBounded() {
+		ResultVerdictCache cache = new ResultVerdictCache(1);
+		cache.put("GET", "200", true);
+		cache.put("GET", "404", false);
+
+		assertNull(cache.get("GET", "404"));
+		assertEquals(1, cache.size());
+	}
+}
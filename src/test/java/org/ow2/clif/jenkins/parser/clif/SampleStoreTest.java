@@ -0,0 +1,97 @@
+/*
+ * CLIF is a Load Injection Framework
+ * Copyright (C) 2012 France Telecom R&D
+ * Copyright (C) 2016 Orange SA
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ *
+ * Contact: clif@ow2.org
+ */
+package org.ow2.clif.jenkins.parser.clif;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SampleStoreTest {
+
+	@Test
+	public void storesIntegerValuesAndDateOffsets() {
+		SampleStore store = new SampleStore();
+		for (int i = 0; i < 100; i++) {
+			store.add(1332860000000L + i * 10, i * 2);
+		}
+		assertEquals(100, store.size());
+		assertEquals(1332860000990L, store.getDate(99));
+		assertEquals(198, store.getValue(99), 0);
+	}
+
+	@Test
+	public void switchesToDoubleValues() {
+		SampleStore store = new SampleStore();
+		store.add(0, 12);
+		store.add(1, 0.5);
+		store.add(2, 7);
+		assertArrayEquals(new double[] {12, 0.5, 7}, store.getValues(), 0);
+	}
+
+	@Test
+	public void switchesToLongDates() {
+		SampleStore store = new SampleStore();
+		store.add(100, 1);
+		store.add(100 + Integer.MAX_VALUE + 1L, 2);
+		store.add(-5, 3);
+		assertEquals(100, store.getDate(0));
+		assertEquals(100 + Integer.MAX_VALUE + 1L, store.getDate(1));
+		assertEquals(-5, store.getDate(2));
+	}
+
+	@Test
+	public void sortsLikeDoubleArraySorter() {
+		Random random = new Random(42);
+		SampleStore store = new SampleStore();
+		double[] values = new double[1000];
+		double[] dates = new double[1000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextInt(50);
+			dates[i] = i;
+			store.add(i, values[i]);
+		}
+		DoubleArraySorter.sort(values, dates);
+		store.sortByValue();
+
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(values[i], store.getValue(i), 0);
+			assertEquals((long) dates[i], store.getDate(i));
+		}
+	}
+
+	@Test
+	public void retainsRangeAndMerges() {
+		SampleStore store = new SampleStore();
+		for (int i = 0; i < 10; i++) {
+			store.add(i, i);
+		}
+		store.retain(2, 5);
+		assertArrayEquals(new double[] {2, 3, 4}, store.getValues(), 0);
+
+		SampleStore other = new SampleStore();
+		other.add(1000, 1.5);
+		store.addAll(other);
+		assertArrayEquals(new double[] {2, 3, 4, 1.5}, store.getValues(), 0);
+		assertEquals(1000, store.getDate(3));
+	}
+}